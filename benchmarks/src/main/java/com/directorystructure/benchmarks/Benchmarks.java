@@ -0,0 +1,31 @@
+package com.directorystructure.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler always on, so every result reports bytes
+ * allocated per operation ({@code gc.alloc.rate.norm}) next to ops/s. Accepts the usual JMH
+ * command line, e.g. {@code SearchBenchmark -p filterType=NAME_GLOB}.
+ */
+public final class Benchmarks {
+
+    private Benchmarks() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        Runner runner = new Runner(new OptionsBuilder().parent(commandLine).addProfiler(GCProfiler.class).build());
+        if (commandLine.shouldList()) {
+            runner.list();
+            return;
+        }
+        runner.run();
+    }
+}
@@ -0,0 +1,51 @@
+package com.directorystructure.benchmarks;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.directorystructure.model.DirectoryStructure;
+import com.directorystructure.util.ResultFormatter;
+
+/**
+ * Tree rendering, both built into a String and streamed to a writer that discards its input.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FormatBenchmark {
+
+    private DirectoryStructure structure;
+
+    @Setup
+    public void setUp(TreeState state) {
+        structure = new DirectoryStructure();
+        structure.bulkLoad(state.tree.nodes());
+        structure.computeAllSizes();
+        structure.freeze();
+    }
+
+    @Benchmark
+    public String formatTree() {
+        return ResultFormatter.formatTree(structure);
+    }
+
+    @Benchmark
+    public void streamTree() throws IOException {
+        ResultFormatter.formatTree(structure, Writer.nullWriter());
+    }
+}
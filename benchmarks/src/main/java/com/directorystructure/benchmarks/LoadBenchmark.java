@@ -0,0 +1,92 @@
+package com.directorystructure.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.directorystructure.model.DirectoryStructure;
+import com.directorystructure.model.Node;
+import com.directorystructure.model.NodeBuffer;
+import com.directorystructure.util.CsvParser;
+
+/**
+ * Parsing, loading and size computation for the generated tree.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class CsvFile {
+        Path file;
+
+        @Setup
+        public void write(TreeState state) throws IOException {
+            file = Files.createTempFile("directory-structure", ".csv");
+            TreeGenerator.writeCsv(state.tree.nodes(), file);
+        }
+
+        @TearDown
+        public void delete() throws IOException {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * A freshly loaded structure whose sizes have not been computed yet.
+     */
+    @State(Scope.Thread)
+    public static class Unsized {
+        DirectoryStructure structure;
+
+        @Setup(Level.Invocation)
+        public void load(TreeState state) {
+            structure = new DirectoryStructure();
+            structure.bulkLoad(state.tree.nodes());
+        }
+    }
+
+    @Benchmark
+    public NodeBuffer parseCsv(CsvFile csv) {
+        return CsvParser.parse(csv.file);
+    }
+
+    @Benchmark
+    public DirectoryStructure addNode(TreeState state) {
+        DirectoryStructure structure = new DirectoryStructure();
+        for (Node node : state.tree.nodes()) {
+            structure.addNode(node);
+        }
+        return structure;
+    }
+
+    @Benchmark
+    public DirectoryStructure bulkLoad(TreeState state) {
+        DirectoryStructure structure = new DirectoryStructure();
+        structure.bulkLoad(state.tree.nodes());
+        return structure;
+    }
+
+    @Benchmark
+    public DirectoryStructure computeAllSizes(Unsized unsized) {
+        unsized.structure.computeAllSizes();
+        return unsized.structure;
+    }
+}
@@ -0,0 +1,329 @@
+package com.directorystructure.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import com.directorystructure.model.enums.FilterType;
+import com.directorystructure.service.FileSystem;
+import com.directorystructure.service.SearchCriteria;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * End-to-end load harness. Generates a CSV (or reuses one), loads it through
+ * {@link FileSystem#loadFromCsv(Path)}, then replays a weighted mix of searches from many threads
+ * for a fixed time and reports throughput, latency percentiles per query kind and GC pauses.
+ * Latencies are recorded in HDR histograms; {@code --hgrm} writes the full distribution.
+ * <p>
+ * By default every thread issues its next query as soon as the previous one returns, which
+ * measures service time but hides queueing: a stall delays the queries behind it instead of
+ * recording them as slow. {@code --rate} instead schedules queries at a fixed total rate and
+ * times each from its intended start, which is what capacity planning needs. Failed queries
+ * are counted as errors and left out of the latencies.
+ *
+ * <pre>
+ * java -cp benchmarks/target/benchmarks.jar com.directorystructure.benchmarks.LoadGenerator \
+ *     --rows 5000000 --threads 16 --duration 60 --rate 20000 --mix CLASSIFICATION=1,DIRECTORY=3,SIZE=2
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // GC notification actions that stop the application threads
+    private static final Set<String> PAUSE_ACTIONS = Set.of("end of minor GC", "end of major GC", "end of GC pause");
+
+    /**
+     * The kinds of query in the mix; each builds a fresh criteria from the tree's sample values.
+     */
+    enum QueryKind {
+        CLASSIFICATION {
+            SearchCriteria build(TreeGenerator.Samples samples, ThreadLocalRandom random) {
+                return new SearchCriteria().where(FilterType.CLASSIFICATION, classification(random));
+            }
+        },
+        DIRECTORY {
+            SearchCriteria build(TreeGenerator.Samples samples, ThreadLocalRandom random) {
+                return new SearchCriteria()
+                        .where(FilterType.DIRECTORY_NAME, pick(samples.directoryNames(), random))
+                        .and(FilterType.CLASSIFICATION, classification(random), random.nextBoolean());
+            }
+        },
+        PATH {
+            SearchCriteria build(TreeGenerator.Samples samples, ThreadLocalRandom random) {
+                return new SearchCriteria().where(FilterType.PATH, pick(samples.directoryPaths(), random));
+            }
+        },
+        NAME {
+            SearchCriteria build(TreeGenerator.Samples samples, ThreadLocalRandom random) {
+                return new SearchCriteria().where(FilterType.NAME, pick(samples.fileNames(), random));
+            }
+        },
+        NAME_GLOB {
+            SearchCriteria build(TreeGenerator.Samples samples, ThreadLocalRandom random) {
+                return new SearchCriteria().where(FilterType.NAME_GLOB, "*" + random.nextInt(1000) + ".log");
+            }
+        },
+        CHECKSUM {
+            SearchCriteria build(TreeGenerator.Samples samples, ThreadLocalRandom random) {
+                return new SearchCriteria().where(FilterType.CHECKSUM, pick(samples.checksums(), random));
+            }
+        },
+        SIZE_RANGE {
+            SearchCriteria build(TreeGenerator.Samples samples, ThreadLocalRandom random) {
+                long min = random.nextLong(1L << 20);
+                return new SearchCriteria().where(FilterType.SIZE_RANGE, min + ".." + (min + 1024));
+            }
+        },
+        SIZE {
+            SearchCriteria build(TreeGenerator.Samples samples, ThreadLocalRandom random) {
+                return new SearchCriteria()
+                        .where(FilterType.DIRECTORY_NAME, pick(samples.directoryNames(), random))
+                        .or(FilterType.CLASSIFICATION, classification(random))
+                        .size();
+            }
+        };
+
+        abstract SearchCriteria build(TreeGenerator.Samples samples, ThreadLocalRandom random);
+
+        private static String classification(ThreadLocalRandom random) {
+            return TreeGenerator.CLASSIFICATIONS[random.nextInt(TreeGenerator.CLASSIFICATIONS.length)];
+        }
+
+        private static String pick(List<String> values, ThreadLocalRandom random) {
+            return values.get(random.nextInt(values.size()));
+        }
+    }
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int rows = Integer.parseInt(options.getOrDefault("rows", "2000000"));
+        int fanout = Integer.parseInt(options.getOrDefault("fanout", "32"));
+        int depth = Integer.parseInt(options.getOrDefault("depth", "12"));
+        double skew = Double.parseDouble(options.getOrDefault("skew", "1.0"));
+        int threads = Integer.parseInt(options.getOrDefault("threads",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup", "10"));
+        long durationSeconds = Long.parseLong(options.getOrDefault("duration", "30"));
+        long cacheSize = Long.parseLong(options.getOrDefault("cache", "0"));
+        long cacheChars = Long.parseLong(options.getOrDefault("cacheChars", String.valueOf(64L << 20)));
+        double rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        QueryKind[] mix = parseMix(options.getOrDefault("mix",
+                "CLASSIFICATION=2,DIRECTORY=3,PATH=2,NAME=2,NAME_GLOB=1,CHECKSUM=1,SIZE_RANGE=1,SIZE=2"));
+
+        Path csv = options.containsKey("csv") ? Path.of(options.get("csv")) : Files.createTempFile("load", ".csv");
+        long started = System.nanoTime();
+        TreeGenerator.Samples samples;
+        if (options.containsKey("csv") && Files.exists(csv)) {
+            // Generation is deterministic, so the same shape options reproduce the file's samples
+            samples = TreeGenerator.generate(rows, fanout, depth, skew, 42, node -> {
+            });
+            System.out.printf("Reusing %s (%,d MB)%n", csv, Files.size(csv) >> 20);
+        } else {
+            samples = TreeGenerator.writeCsv(rows, fanout, depth, skew, 42, csv);
+            System.out.printf("Generated %,d rows in %s (%,d MB) in %.1f s%n", rows, csv,
+                    Files.size(csv) >> 20, seconds(System.nanoTime() - started));
+        }
+
+        FileSystem fileSystem = new FileSystem(cacheSize, cacheChars);
+        started = System.nanoTime();
+        fileSystem.loadFromCsv(csv);
+        System.out.printf("Loaded %,d nodes in %.1f s%n", fileSystem.getDirectoryStructure().getNodeCount(),
+                seconds(System.nanoTime() - started));
+        if (!options.containsKey("csv")) {
+            Files.deleteIfExists(csv);
+        }
+
+        Map<QueryKind, Recorder> recorders = new EnumMap<>(QueryKind.class);
+        for (QueryKind kind : mix) {
+            recorders.computeIfAbsent(kind, k -> new Recorder(MAX_LATENCY_NANOS, 3));
+        }
+        Histogram gcPauses = new Histogram(MAX_LATENCY_NANOS, 3);
+        LongAdder queries = new LongAdder();
+        LongAdder errors = new LongAdder();
+
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(durationSeconds);
+        // With a target rate each thread issues queries on a fixed schedule and latency is measured
+        // from the intended start, so a stall counts against every query it delayed
+        long interval = rate > 0 ? Math.max((long) (threads * 1e9 / rate), 1) : 0;
+        long scheduleStart = System.nanoTime();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            long firstStart = scheduleStart + interval * thread / threads;
+            workers.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                long next = firstStart;
+                while (true) {
+                    long start;
+                    if (interval > 0) {
+                        start = next;
+                        next += interval;
+                        for (long wait; (wait = start - System.nanoTime()) > 0;) {
+                            LockSupport.parkNanos(wait);
+                        }
+                    } else {
+                        start = System.nanoTime();
+                    }
+                    if (start >= end) {
+                        break;
+                    }
+                    QueryKind kind = mix[random.nextInt(mix.length)];
+                    SearchCriteria criteria = kind.build(samples, random);
+                    try {
+                        fileSystem.search(criteria);
+                    } catch (RuntimeException e) {
+                        if (start >= warmupEnd) {
+                            errors.increment();
+                        }
+                        continue;
+                    }
+                    long latency = System.nanoTime() - start;
+                    if (start >= warmupEnd) {
+                        recorders.get(kind).recordValue(Math.min(latency, MAX_LATENCY_NANOS));
+                        queries.increment();
+                    }
+                }
+            });
+        }
+
+        TimeUnit.NANOSECONDS.sleep(Math.max(warmupEnd - System.nanoTime(), 0));
+        List<Runnable> unregister = recordGcPauses(gcPauses);
+        workers.shutdown();
+        workers.awaitTermination(durationSeconds + 60, TimeUnit.SECONDS);
+        unregister.forEach(Runnable::run);
+
+        Map<QueryKind, Histogram> latencies = new EnumMap<>(QueryKind.class);
+        recorders.forEach((kind, recorder) -> latencies.put(kind, recorder.getIntervalHistogram()));
+        Histogram total = new Histogram(MAX_LATENCY_NANOS, 3);
+        latencies.values().forEach(total::add);
+        report(System.out, threads, rate, durationSeconds, queries.sum(), errors.sum(), latencies, total, gcPauses);
+        if (options.containsKey("hgrm")) {
+            try (PrintStream out = new PrintStream(Files.newOutputStream(Path.of(options.get("hgrm"))))) {
+                total.outputPercentileDistribution(out, 1000.0);
+            }
+        }
+    }
+
+    private static void report(PrintStream out, int threads, double rate, long durationSeconds, long queries,
+            long errors, Map<QueryKind, Histogram> latencies, Histogram total, Histogram gcPauses) {
+        out.printf("%nThreads %d, %s, %,d queries in %d s: %,.0f queries/s, %,d errors (not in the latencies)%n",
+                threads, rate > 0 ? String.format("target %,.0f queries/s", rate) : "closed loop", queries,
+                durationSeconds, queries / (double) durationSeconds, errors);
+        out.printf("%-16s %12s %10s %10s %10s %10s %10s%n", "latency (us)", "count", "p50", "p90", "p99", "p999",
+                "max");
+        latencies.forEach((kind, histogram) -> printLatencies(out, kind.name(), histogram));
+        printLatencies(out, "ALL", total);
+        out.printf("%nGC pauses: %,d, total %.1f ms, p99 %.2f ms, max %.2f ms%n", gcPauses.getTotalCount(),
+                totalMillis(gcPauses), gcPauses.getValueAtPercentile(99) / 1e6, gcPauses.getMaxValue() / 1e6);
+    }
+
+    private static void printLatencies(PrintStream out, String name, Histogram histogram) {
+        out.printf("%-16s %,12d %10.1f %10.1f %10.1f %10.1f %10.1f%n", name, histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(90) / 1e3,
+                histogram.getValueAtPercentile(99) / 1e3, histogram.getValueAtPercentile(99.9) / 1e3,
+                histogram.getMaxValue() / 1e3);
+    }
+
+    private static double totalMillis(Histogram histogram) {
+        double total = 0;
+        for (var value : histogram.recordedValues()) {
+            total += value.getValueIteratedTo() * (double) value.getCountAtValueIteratedTo();
+        }
+        return total / 1e6;
+    }
+
+    /**
+     * Subscribes to GC notifications and records the duration of every stop-the-world collection.
+     * Only the actions in {@link #PAUSE_ACTIONS} are pauses; concurrent work such as the cycles
+     * of ZGC and Shenandoah or G1's concurrent collector is skipped.
+     */
+    private static List<Runnable> recordGcPauses(Histogram pauses) {
+        List<Runnable> unregister = new ArrayList<>();
+        NotificationListener listener = (notification, handback) -> {
+            if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                return;
+            }
+            GarbageCollectionNotificationInfo info =
+                    GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            if (PAUSE_ACTIONS.contains(info.getGcAction())) {
+                synchronized (pauses) {
+                    pauses.recordValue(Math.min(TimeUnit.MILLISECONDS.toNanos(info.getGcInfo().getDuration()),
+                            MAX_LATENCY_NANOS));
+                }
+            }
+        };
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(listener, null, null);
+                unregister.add(() -> {
+                    try {
+                        emitter.removeNotificationListener(listener);
+                    } catch (Exception e) {
+                        // Already removed
+                    }
+                });
+            }
+        }
+        return unregister;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Expected --option value pairs, got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    /**
+     * Expands {@code KIND=weight,...} into an array where each kind appears weight times, so a
+     * uniform index into it picks kinds in proportion to their weights.
+     */
+    private static QueryKind[] parseMix(String mix) {
+        List<QueryKind> kinds = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            QueryKind kind = QueryKind.valueOf(parts[0].trim());
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            for (int i = 0; i < weight; i++) {
+                kinds.add(kind);
+            }
+        }
+        if (kinds.isEmpty()) {
+            throw new IllegalArgumentException("Query mix is empty");
+        }
+        return kinds.toArray(new QueryKind[0]);
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
@@ -0,0 +1,71 @@
+package com.directorystructure.benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.directorystructure.model.DirectoryStructure;
+import com.directorystructure.model.Node;
+import com.directorystructure.model.enums.FilterType;
+import com.directorystructure.service.SearchCriteria;
+import com.directorystructure.service.SearchEngine;
+
+/**
+ * {@link SearchEngine#execute(SearchCriteria)} with a single filter of each type, plain and negated.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    @Param({"CLASSIFICATION", "DIRECTORY_NAME", "NAME", "NAME_PREFIX", "NAME_GLOB", "PATH", "CHECKSUM", "SIZE_RANGE"})
+    public FilterType filterType;
+
+    @Param({"false", "true"})
+    public boolean negate;
+
+    private SearchEngine engine;
+    private SearchCriteria criteria;
+
+    @Setup
+    public void setUp(TreeState state) {
+        DirectoryStructure structure = new DirectoryStructure();
+        structure.bulkLoad(state.tree.nodes());
+        structure.computeAllSizes();
+        structure.freeze();
+        engine = new SearchEngine(structure);
+        criteria = new SearchCriteria().where(filterType, value(state.tree), negate);
+    }
+
+    private String value(TreeGenerator.Tree tree) {
+        return switch (filterType) {
+            case CLASSIFICATION -> "Secret";
+            case DIRECTORY_NAME -> tree.directoryName();
+            case NAME -> tree.fileName();
+            case NAME_PREFIX -> "file1";
+            case NAME_GLOB -> "*7.log";
+            case PATH -> tree.directoryPath();
+            case CHECKSUM -> tree.checksum();
+            case SIZE_RANGE -> "1024..65536";
+        };
+    }
+
+    @Benchmark
+    public Set<Node> execute() {
+        return engine.execute(criteria);
+    }
+}
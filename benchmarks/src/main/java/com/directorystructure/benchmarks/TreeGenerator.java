@@ -0,0 +1,211 @@
+package com.directorystructure.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+import com.directorystructure.model.Node;
+import com.directorystructure.model.NodeType;
+
+/**
+ * Deterministic synthetic trees. Directories are expanded breadth-first with {@code fanout}
+ * children each, a quarter of them directories until {@code maxDepth} is reached; once every
+ * directory is full the remaining nodes are spread over them as extra files. Classifications
+ * follow a Zipf distribution with exponent {@code skew}, so 0 is uniform and 2 puts most files
+ * in one class. Checksums are drawn from a pool smaller than the file count, so duplicates occur.
+ * Nodes are streamed to a sink in parent-before-child order, so trees of many millions of rows
+ * can be written without holding them in memory.
+ */
+public final class TreeGenerator {
+
+    static final String[] CLASSIFICATIONS = {"Public", "Secret", "Top secret", "Confidential"};
+    private static final String[] EXTENSIONS = {".txt", ".csv", ".log", ".bin"};
+    private static final int SAMPLES = 256;
+
+    /**
+     * A generated tree held in memory, for benchmarks that load it directly.
+     */
+    public record Tree(List<Node> nodes, Samples samples) {
+
+        public String directoryName() {
+            return samples.directoryNames().get(0);
+        }
+
+        public String directoryPath() {
+            return samples.directoryPaths().get(0);
+        }
+
+        public String fileName() {
+            return samples.fileNames().get(0);
+        }
+
+        public String checksum() {
+            return samples.checksums().get(0);
+        }
+    }
+
+    /**
+     * Values spread over the tree that are guaranteed to exist in it, for building queries.
+     */
+    public record Samples(List<String> directoryNames, List<String> directoryPaths, List<String> fileNames,
+            List<String> checksums) {
+    }
+
+    private TreeGenerator() {
+    }
+
+    public static Tree generate(int nodeCount, int fanout, int maxDepth, double skew, long seed) {
+        List<Node> nodes = new ArrayList<>(nodeCount);
+        Samples samples = generate(nodeCount, fanout, maxDepth, skew, seed, nodes::add);
+        return new Tree(nodes, samples);
+    }
+
+    /**
+     * Writes a generated tree in the semicolon-separated format CsvParser reads.
+     */
+    public static Samples writeCsv(int nodeCount, int fanout, int maxDepth, double skew, long seed, Path file)
+            throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# id; parentId; name; type; size; classification; checksum;\n");
+            return generate(nodeCount, fanout, maxDepth, skew, seed, node -> {
+                try {
+                    writeRow(writer, node);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public static void writeCsv(List<Node> nodes, Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# id; parentId; name; type; size; classification; checksum;\n");
+            for (Node node : nodes) {
+                writeRow(writer, node);
+            }
+        }
+    }
+
+    public static Samples generate(int nodeCount, int fanout, int maxDepth, double skew, long seed,
+            Consumer<Node> sink) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] cumulative = zipf(CLASSIFICATIONS.length, skew);
+        int checksumPool = Math.max(nodeCount * 3 / 4, 1);
+        // Sample every stride-th directory and file so the samples cover the whole tree
+        int stride = Math.max(nodeCount / SAMPLES, 1);
+
+        // Directories as parallel arrays: id, depth and the index of the parent directory
+        long[] directoryIds = new long[16];
+        int[] directoryDepths = new int[16];
+        int[] directoryParents = new int[16];
+        int directoryCount = 1;
+        directoryIds[0] = 1L;
+        directoryParents[0] = -1;
+        sink.accept(new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null));
+
+        List<Integer> sampledDirectories = new ArrayList<>();
+        List<String> fileNames = new ArrayList<>();
+        List<String> checksums = new ArrayList<>();
+        int emitted = 1;
+        long nextId = 2;
+        int head = 0;
+        while (emitted < nodeCount) {
+            if (head == directoryCount) {
+                head = 0;
+            }
+            int parent = head++;
+            int depth = directoryDepths[parent];
+            for (int child = 0; child < fanout && emitted < nodeCount; child++, emitted++) {
+                long id = nextId++;
+                boolean sampled = id % stride == 0;
+                if (depth < maxDepth && random.nextInt(4) == 0) {
+                    if (directoryCount == directoryIds.length) {
+                        directoryIds = Arrays.copyOf(directoryIds, directoryCount * 2);
+                        directoryDepths = Arrays.copyOf(directoryDepths, directoryCount * 2);
+                        directoryParents = Arrays.copyOf(directoryParents, directoryCount * 2);
+                    }
+                    directoryIds[directoryCount] = id;
+                    directoryDepths[directoryCount] = depth + 1;
+                    directoryParents[directoryCount] = parent;
+                    if (sampled || sampledDirectories.isEmpty()) {
+                        sampledDirectories.add(directoryCount);
+                    }
+                    directoryCount++;
+                    sink.accept(new Node(id, directoryIds[parent], "dir" + id, null, NodeType.DIRECTORY, null, null));
+                } else {
+                    Node file = new Node(id, directoryIds[parent],
+                            "file" + id + EXTENSIONS[random.nextInt(EXTENSIONS.length)],
+                            1L + random.nextLong(1L << 20), NodeType.FILE,
+                            CLASSIFICATIONS[pick(cumulative, random.nextDouble())],
+                            "c" + random.nextInt(checksumPool));
+                    if (sampled || fileNames.isEmpty()) {
+                        fileNames.add(file.getName());
+                        checksums.add(file.getChecksum());
+                    }
+                    sink.accept(file);
+                }
+            }
+        }
+
+        if (sampledDirectories.isEmpty()) {
+            sampledDirectories.add(0);
+        }
+        if (fileNames.isEmpty()) {
+            fileNames.add("root");
+            checksums.add("");
+        }
+        List<String> directoryNames = new ArrayList<>();
+        List<String> directoryPaths = new ArrayList<>();
+        for (int directory : sampledDirectories) {
+            directoryNames.add(directory == 0 ? "root" : "dir" + directoryIds[directory]);
+            StringBuilder path = new StringBuilder();
+            for (int ancestor = directory; ancestor > 0; ancestor = directoryParents[ancestor]) {
+                path.insert(0, "/dir" + directoryIds[ancestor]);
+            }
+            directoryPaths.add(path.insert(0, "/root").toString());
+        }
+        return new Samples(directoryNames, directoryPaths, fileNames, checksums);
+    }
+
+    private static void writeRow(BufferedWriter writer, Node node) throws IOException {
+        writer.write(node.getId() + ";" + orEmpty(node.getParentId()) + ";" + node.getName() + ";"
+                + (node.isDirectory() ? "directory" : "file") + ";" + orEmpty(node.getSize()) + ";"
+                + orEmpty(node.getClassification()) + ";" + orEmpty(node.getChecksum()) + ";\n");
+    }
+
+    private static String orEmpty(Object value) {
+        return value != null ? value.toString() : "";
+    }
+
+    private static double[] zipf(int classes, double skew) {
+        double[] cumulative = new double[classes];
+        double total = 0;
+        for (int k = 0; k < classes; k++) {
+            total += 1.0 / Math.pow(k + 1, skew);
+            cumulative[k] = total;
+        }
+        for (int k = 0; k < classes; k++) {
+            cumulative[k] /= total;
+        }
+        return cumulative;
+    }
+
+    private static int pick(double[] cumulative, double value) {
+        for (int k = 0; k < cumulative.length - 1; k++) {
+            if (value < cumulative[k]) {
+                return k;
+            }
+        }
+        return cumulative.length - 1;
+    }
+}
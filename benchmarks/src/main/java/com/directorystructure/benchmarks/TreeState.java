@@ -0,0 +1,33 @@
+package com.directorystructure.benchmarks;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Shape of the synthetic tree shared by all benchmarks; override with e.g.
+ * {@code -p nodeCount=1000000 -p skew=0,2}.
+ */
+@State(Scope.Benchmark)
+public class TreeState {
+
+    @Param({"100000"})
+    public int nodeCount;
+
+    @Param({"16"})
+    public int fanout;
+
+    @Param({"8"})
+    public int depth;
+
+    @Param({"1.0"})
+    public double skew;
+
+    public TreeGenerator.Tree tree;
+
+    @Setup
+    public void generate() {
+        tree = TreeGenerator.generate(nodeCount, fanout, depth, skew, 42);
+    }
+}
@@ -0,0 +1,18 @@
+package com.directorystructure.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.directorystructure.ComputeSizes")
+@Label("Compute Sizes")
+@Category({"Directory Structure", "Load"})
+@Description("Computation of every directory size and the classification rollups")
+@StackTrace(false)
+public final class ComputeSizesEvent extends jdk.jfr.Event {
+
+    @Label("Nodes")
+    public long nodes;
+}
@@ -0,0 +1,29 @@
+package com.directorystructure.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.directorystructure.CsvParse")
+@Label("CSV Parse")
+@Category({"Directory Structure", "Load"})
+@Description("Parsing of one CSV file or resource into node rows")
+@StackTrace(false)
+public final class CsvParseEvent extends jdk.jfr.Event {
+
+    @Label("Source")
+    public String source;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Parallel")
+    public boolean parallel;
+}
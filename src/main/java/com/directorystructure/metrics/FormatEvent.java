@@ -0,0 +1,25 @@
+package com.directorystructure.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.directorystructure.Format")
+@Label("Format")
+@Category({"Directory Structure", "Output"})
+@Description("Rendering of a tree, path list or search result into text")
+@StackTrace(false)
+public final class FormatEvent extends jdk.jfr.Event {
+
+    @Label("Output")
+    @Description("tree, paths, searchResults or searchResultPaths")
+    public String output;
+
+    @Label("Lines")
+    public long lines;
+
+    @Label("Characters")
+    public long characters;
+}
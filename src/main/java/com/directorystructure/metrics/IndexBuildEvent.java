@@ -0,0 +1,25 @@
+package com.directorystructure.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.directorystructure.IndexBuild")
+@Label("Index Build")
+@Category({"Directory Structure", "Load"})
+@Description("Appending rows to the columns and rebuilding the indexes, or deriving the read-only indexes on freeze")
+@StackTrace(false)
+public final class IndexBuildEvent extends jdk.jfr.Event {
+
+    @Label("Phase")
+    @Description("bulkLoad or freeze")
+    public String phase;
+
+    @Label("Rows")
+    public long rows;
+
+    @Label("Parallel")
+    public boolean parallel;
+}
@@ -0,0 +1,77 @@
+package com.directorystructure.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram with 64 fixed power-of-two buckets: bucket 0 counts values of 0 or less
+ * and bucket {@code i} values in {@code [2^(i-1), 2^i)}. Recording is a few atomic increments and
+ * never allocates; percentiles are reported as the upper bound of their bucket, so they are
+ * accurate to within a factor of two.
+ */
+public final class Log2Histogram {
+
+    public static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long value) {
+        buckets.incrementAndGet(value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long total = count.sum();
+        return total == 0 ? 0 : sum.sum() / (double) total;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given percentile, capped at the maximum; 0 when empty.
+     */
+    public long getPercentile(double percentile) {
+        long[] counts = getBuckets();
+        long total = 0;
+        for (long bucket : counts) {
+            total += bucket;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max((long) Math.ceil(total * percentile / 100.0), 1);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                long upper = bucket == 0 ? 0 : bucket == 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+                return Math.min(upper, getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public long[] getBuckets() {
+        long[] counts = new long[BUCKETS];
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] = buckets.get(bucket);
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,52 @@
+package com.directorystructure.metrics;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Registers beans with the platform MBean server under {@code com.directorystructure:type=...}.
+ */
+public final class MBeans {
+
+    public static final String DOMAIN = "com.directorystructure";
+
+    private MBeans() {
+    }
+
+    public static ObjectName name(String type, String name) {
+        try {
+            return new ObjectName(DOMAIN + ":type=" + type + (name != null ? ",name=" + ObjectName.quote(name) : ""));
+        } catch (JMException e) {
+            throw new IllegalStateException("Invalid MBean name for " + type + ": " + name, e);
+        }
+    }
+
+    /**
+     * Registers the bean, replacing any bean already registered under the same name.
+     */
+    public static void register(Object bean, ObjectName objectName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+            server.registerMBean(bean, objectName);
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to register MBean " + objectName, e);
+        }
+    }
+
+    public static void unregister(ObjectName objectName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister MBean " + objectName, e);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.directorystructure.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide CSV parser counters. The parser is a static utility, so there is one instance.
+ * A rejected row is one that made a parse fail; the parser stops at the first one.
+ */
+public final class ParserMetrics implements ParserMetricsMXBean {
+
+    private static final ParserMetrics GLOBAL = new ParserMetrics();
+
+    private final LongAdder parses = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder nanos = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile double lastRowsPerSecond;
+
+    public static ParserMetrics global() {
+        return GLOBAL;
+    }
+
+    public void recordParse(long rowCount, long byteCount, long elapsedNanos) {
+        parses.increment();
+        rows.add(rowCount);
+        bytes.add(byteCount);
+        nanos.add(elapsedNanos);
+        lastRowsPerSecond = ratePerSecond(rowCount, elapsedNanos);
+    }
+
+    public void recordRejectedRow() {
+        rejected.increment();
+    }
+
+    @Override
+    public long getParseCount() {
+        return parses.sum();
+    }
+
+    @Override
+    public long getRowsParsed() {
+        return rows.sum();
+    }
+
+    @Override
+    public long getBytesParsed() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getRejectedRows() {
+        return rejected.sum();
+    }
+
+    @Override
+    public double getRowsPerSecond() {
+        return ratePerSecond(rows.sum(), nanos.sum());
+    }
+
+    @Override
+    public double getLastRowsPerSecond() {
+        return lastRowsPerSecond;
+    }
+
+    private static double ratePerSecond(long count, long elapsedNanos) {
+        return elapsedNanos <= 0 ? 0 : count * 1e9 / elapsedNanos;
+    }
+}
@@ -0,0 +1,19 @@
+package com.directorystructure.metrics;
+
+public interface ParserMetricsMXBean {
+
+    long getParseCount();
+
+    long getRowsParsed();
+
+    long getBytesParsed();
+
+    long getRejectedRows();
+
+    /**
+     * Rows per second over all parses so far.
+     */
+    double getRowsPerSecond();
+
+    double getLastRowsPerSecond();
+}
@@ -0,0 +1,70 @@
+package com.directorystructure.metrics;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+import com.directorystructure.model.SearchExpression;
+import com.directorystructure.model.enums.FilterType;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("com.directorystructure.Search")
+@Label("Search")
+@Category({"Directory Structure", "Search"})
+@Description("Evaluation of one search expression to its matches, or to a size sum from the rollups")
+@StackTrace(false)
+public final class SearchEvent extends jdk.jfr.Event {
+
+    @Label("Filter Types")
+    public String filterTypes;
+
+    @Label("Negated Filters")
+    public int negatedFilters;
+
+    @Label("Result Size")
+    @Description("Matching nodes, or -1 when answered from the rollups")
+    public long resultSize;
+
+    @Label("From Rollups")
+    public boolean rollup;
+
+    /**
+     * Fills in the expression attributes and commits; call only after {@link #shouldCommit()}.
+     */
+    public void commit(SearchExpression expression, long resultSize, boolean rollup) {
+        boolean[] used = new boolean[FilterType.values().length];
+        this.negatedFilters = collect(expression, false, used);
+        StringJoiner types = new StringJoiner(",");
+        for (FilterType type : FilterType.values()) {
+            if (used[type.ordinal()]) {
+                types.add(type.name());
+            }
+        }
+        this.filterTypes = types.toString();
+        this.resultSize = resultSize;
+        this.rollup = rollup;
+        commit();
+    }
+
+    private static int collect(SearchExpression expression, boolean negate, boolean[] used) {
+        if (expression instanceof SearchExpression.Term term) {
+            used[term.filter().getType().ordinal()] = true;
+            return term.filter().isNegated() != negate ? 1 : 0;
+        }
+        if (expression instanceof SearchExpression.Not not) {
+            return collect(not.operand(), !negate, used);
+        }
+        List<SearchExpression> operands = expression instanceof SearchExpression.And and
+                ? and.operands()
+                : ((SearchExpression.Or) expression).operands();
+        int negated = 0;
+        for (SearchExpression operand : operands) {
+            negated += collect(operand, negate, used);
+        }
+        return negated;
+    }
+}
@@ -0,0 +1,153 @@
+package com.directorystructure.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntToLongFunction;
+
+import com.directorystructure.model.SearchExpression;
+import com.directorystructure.model.enums.FilterType;
+
+/**
+ * Latency, result size and negation counters per filter type. Everything is preallocated per
+ * type, so recording a query only walks its expression and bumps counters.
+ */
+public final class SearchMetrics implements SearchMetricsMXBean {
+
+    /**
+     * Result size to pass when a query was answered without building a match set.
+     */
+    public static final long UNKNOWN_RESULT_SIZE = -1;
+
+    private static final FilterType[] FILTER_TYPES = FilterType.values();
+
+    private final Log2Histogram latency = new Log2Histogram();
+    private final LongAdder[] queries = new LongAdder[FILTER_TYPES.length];
+    private final LongAdder[] negated = new LongAdder[FILTER_TYPES.length];
+    private final Log2Histogram[] latencies = new Log2Histogram[FILTER_TYPES.length];
+    private final Log2Histogram[] resultSizes = new Log2Histogram[FILTER_TYPES.length];
+
+    public SearchMetrics() {
+        for (int type = 0; type < FILTER_TYPES.length; type++) {
+            queries[type] = new LongAdder();
+            negated[type] = new LongAdder();
+            latencies[type] = new Log2Histogram();
+            resultSizes[type] = new Log2Histogram();
+        }
+    }
+
+    public void record(SearchExpression expression, long elapsedNanos, long resultSize) {
+        latency.record(elapsedNanos);
+        long types = collect(expression, false, 0L);
+        for (int type = 0; type < FILTER_TYPES.length; type++) {
+            if ((types & 1L << type) != 0) {
+                queries[type].increment();
+                latencies[type].record(elapsedNanos);
+                if (resultSize != UNKNOWN_RESULT_SIZE) {
+                    resultSizes[type].record(resultSize);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the bit mask of filter types used and counts negated terms; {@code negate} tracks
+     * enclosing NOTs.
+     */
+    private long collect(SearchExpression expression, boolean negate, long types) {
+        if (expression instanceof SearchExpression.Term term) {
+            int type = term.filter().getType().ordinal();
+            if (term.filter().isNegated() != negate) {
+                negated[type].increment();
+            }
+            return types | 1L << type;
+        }
+        if (expression instanceof SearchExpression.Not not) {
+            return collect(not.operand(), !negate, types);
+        }
+        List<SearchExpression> operands = expression instanceof SearchExpression.And and
+                ? and.operands()
+                : ((SearchExpression.Or) expression).operands();
+        for (int i = 0; i < operands.size(); i++) {
+            types = collect(operands.get(i), negate, types);
+        }
+        return types;
+    }
+
+    public Log2Histogram getLatencyHistogram(FilterType type) {
+        return latencies[type.ordinal()];
+    }
+
+    public Log2Histogram getResultSizeHistogram(FilterType type) {
+        return resultSizes[type.ordinal()];
+    }
+
+    @Override
+    public long getQueryCount() {
+        return latency.getCount();
+    }
+
+    @Override
+    public double getMeanLatencyMicros() {
+        return latency.getMean() / 1000.0;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return latency.getPercentile(50) / 1000;
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return latency.getPercentile(99) / 1000;
+    }
+
+    @Override
+    public long getLatencyP999Micros() {
+        return latency.getPercentile(99.9) / 1000;
+    }
+
+    @Override
+    public long getMaxLatencyMicros() {
+        return latency.getMax() / 1000;
+    }
+
+    @Override
+    public Map<String, Long> getQueriesByFilterType() {
+        return byType(type -> queries[type].sum());
+    }
+
+    @Override
+    public Map<String, Long> getNegatedFiltersByFilterType() {
+        return byType(type -> negated[type].sum());
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP50MicrosByFilterType() {
+        return byType(type -> latencies[type].getPercentile(50) / 1000);
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP99MicrosByFilterType() {
+        return byType(type -> latencies[type].getPercentile(99) / 1000);
+    }
+
+    @Override
+    public Map<String, Long> getMeanResultSizeByFilterType() {
+        return byType(type -> Math.round(resultSizes[type].getMean()));
+    }
+
+    @Override
+    public Map<String, Long> getMaxResultSizeByFilterType() {
+        return byType(type -> resultSizes[type].getMax());
+    }
+
+    private Map<String, Long> byType(IntToLongFunction value) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (int type = 0; type < FILTER_TYPES.length; type++) {
+            values.put(FILTER_TYPES[type].name(), value.applyAsLong(type));
+        }
+        return values;
+    }
+}
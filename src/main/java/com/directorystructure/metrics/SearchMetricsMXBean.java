@@ -0,0 +1,34 @@
+package com.directorystructure.metrics;
+
+import java.util.Map;
+
+/**
+ * Search counters. Per-filter-type values are keyed by FilterType name; a query counts once for
+ * every filter type it uses, with its whole latency and result size.
+ */
+public interface SearchMetricsMXBean {
+
+    long getQueryCount();
+
+    double getMeanLatencyMicros();
+
+    long getLatencyP50Micros();
+
+    long getLatencyP99Micros();
+
+    long getLatencyP999Micros();
+
+    long getMaxLatencyMicros();
+
+    Map<String, Long> getQueriesByFilterType();
+
+    Map<String, Long> getNegatedFiltersByFilterType();
+
+    Map<String, Long> getLatencyP50MicrosByFilterType();
+
+    Map<String, Long> getLatencyP99MicrosByFilterType();
+
+    Map<String, Long> getMeanResultSizeByFilterType();
+
+    Map<String, Long> getMaxResultSizeByFilterType();
+}
@@ -0,0 +1,56 @@
+package com.directorystructure.metrics;
+
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import com.directorystructure.model.DirectoryStructure;
+
+/**
+ * Reads its values from whatever structure is current at the time of the JMX call.
+ */
+public final class StructureMetrics implements StructureMetricsMXBean {
+
+    private final Supplier<DirectoryStructure> structure;
+    private final LongSupplier version;
+
+    public StructureMetrics(Supplier<DirectoryStructure> structure, LongSupplier version) {
+        this.structure = structure;
+        this.version = version;
+    }
+
+    @Override
+    public long getVersion() {
+        return version.getAsLong();
+    }
+
+    @Override
+    public int getNodeCount() {
+        return structure.get().getNodeCount();
+    }
+
+    @Override
+    public int getFileCount() {
+        return structure.get().getFileCount();
+    }
+
+    @Override
+    public int getDirectoryCount() {
+        DirectoryStructure current = structure.get();
+        return current.getNodeCount() - current.getFileCount();
+    }
+
+    @Override
+    public int getDistinctChecksumCount() {
+        return structure.get().getDistinctChecksumCount();
+    }
+
+    @Override
+    public long getNameBytes() {
+        return structure.get().getNameBytes();
+    }
+
+    @Override
+    public long getIndexBytes() {
+        return structure.get().getIndexBytes();
+    }
+}
@@ -0,0 +1,24 @@
+package com.directorystructure.metrics;
+
+/**
+ * Size of the currently published structure and its indexes.
+ */
+public interface StructureMetricsMXBean {
+
+    long getVersion();
+
+    int getNodeCount();
+
+    int getFileCount();
+
+    int getDirectoryCount();
+
+    int getDistinctChecksumCount();
+
+    long getNameBytes();
+
+    /**
+     * Approximate heap bytes of the column arrays and indexes, excluding names.
+     */
+    long getIndexBytes();
+}
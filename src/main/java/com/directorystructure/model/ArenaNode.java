@@ -0,0 +1,43 @@
+package com.directorystructure.model;
+
+import com.directorystructure.util.ByteArena;
+import com.directorystructure.util.StringDictionary;
+
+/**
+ * Node materialized from the columns whose name and checksum are decoded on first access, so
+ * listing, counting or sizing results never builds their Strings.
+ */
+final class ArenaNode extends Node {
+
+    private final ByteArena nameArena;
+    private final long nameAddress;
+    private final StringDictionary checksumDictionary;
+    private final int checksumCode;
+    private String decodedName;
+    private String decodedChecksum;
+
+    ArenaNode(Long id, Long parentId, ByteArena nameArena, long nameAddress, Long size, NodeType type,
+            String classification, StringDictionary checksumDictionary, int checksumCode) {
+        super(id, parentId, null, size, type, classification, null);
+        this.nameArena = nameArena;
+        this.nameAddress = nameAddress;
+        this.checksumDictionary = checksumDictionary;
+        this.checksumCode = checksumCode;
+    }
+
+    @Override
+    public String getName() {
+        if (decodedName == null) {
+            decodedName = nameArena.getString(nameAddress);
+        }
+        return decodedName;
+    }
+
+    @Override
+    public String getChecksum() {
+        if (decodedChecksum == null) {
+            decodedChecksum = checksumDictionary.get(checksumCode);
+        }
+        return decodedChecksum;
+    }
+}
@@ -1,137 +1,2208 @@
 package com.directorystructure.model;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.stream.Collectors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
 
+import com.directorystructure.exceptions.DataParsingException;
 import com.directorystructure.exceptions.ValidationException;
-import com.google.common.graph.Traverser;
+import com.directorystructure.metrics.ComputeSizesEvent;
+import com.directorystructure.metrics.IndexBuildEvent;
+import com.directorystructure.model.enums.GroupBy;
+import com.directorystructure.util.ByteArena;
+import com.directorystructure.util.IntArrays;
+import com.directorystructure.util.LongIntHashMap;
+import com.directorystructure.util.SnapshotReader;
+import com.directorystructure.util.SnapshotWriter;
+import com.directorystructure.util.StringDictionary;
 
+/**
+ * Columnar tree store. Every node gets a dense ordinal and its attributes live in primitive
+ * arrays indexed by that ordinal; children are kept as CSR offset/target arrays sorted by name.
+ * {@link Node} instances are only materialized on read.
+ * <p>
+ * Mutations keep sizes and rollups current in O(depth), but the derived indexes are not
+ * incremental. An insert invalidates all of them, so the next read or {@link #freeze()} rebuilds
+ * and re-sorts them. A remove or move rewrites the child arrays and, for a remove, compacts the
+ * name, checksum and size orders, in O(n) without sorting; both drop the pre-order index, which
+ * is rebuilt with one O(n) walk. Any size change also re-sorts the size order on the next use.
+ */
 public class DirectoryStructure {
 
-    private Long rootId = null;
-    private final Map<Long, Node> nodes = new HashMap<>();
-    private final Map<Long, TreeSet<Long>> childrenIdMap = new HashMap<>();
-    private final Map<String, Set<Long>> classificationIndex = new HashMap<>();
-    private final Map<String, Long> directoryNameIndex = new HashMap<>();
+    public static final long NO_SIZE = NodeBuffer.NO_VALUE;
 
-    private final Traverser<Long> treeTraverser = Traverser
-            .forTree(nodeId -> childrenIdMap.getOrDefault(nodeId, new TreeSet<>()));
+    private static final int NO_ORDINAL = -1;
+    private static final long NO_VALUE = NodeBuffer.NO_VALUE;
+    private static final byte NO_CODE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+
+    private static final int SNAPSHOT_MAGIC = 0x44534e50;
+    private static final int SNAPSHOT_VERSION = 5;
+
+    private int rootOrdinal = NO_ORDINAL;
+    private int count;
+    private int liveCount;
+    private LongIntHashMap ordinals = new LongIntHashMap();
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] parentIds = new long[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private byte[] classifications = new byte[INITIAL_CAPACITY];
+    // Names are addresses into nameArena, checksums are codes of checksumDictionary
+    private long[] names = new long[INITIAL_CAPACITY];
+    private int[] checksums = new int[INITIAL_CAPACITY];
+    private ByteArena nameArena = new ByteArena();
+    private StringDictionary checksumDictionary = new StringDictionary();
+
+    // CSR children: targets[offsets[p] .. offsets[p + 1]) are the child ordinals of p, sorted by name
+    private int[] childOffsets = new int[1];
+    private int[] childTargets = new int[0];
+    private boolean linked = true;
+    private boolean parentsResolved = true;
+    // Directory sizes are stale once rows are appended by addNode or bulkLoad, until computeAllSizes
+    private boolean sized = true;
+
+    // Pre-order interval index: preOrder[entry[o], exit[o]) lists the subtree of ordinal o
+    private int[] preOrder = new int[0];
+    private int[] entry = new int[0];
+    private int[] exit = new int[0];
+    private int[] depths = new int[0];
+    private boolean indexed = true;
+
+    // Live ordinals sorted by name, ties broken by id; the files among them, and each file's position
+    private int[] nodesByName = new int[0];
+    private int[] filesByName = new int[0];
+    private int[] fileRanks = new int[0];
+    private boolean nameOrdered = true;
+    // Built on the first glob without a literal prefix and dropped when names are added; it may
+    // still list removed nodes, which glob lookups skip
+    private volatile NameTrigramIndex trigramIndex;
+
+    // Files by checksum code: checksumFiles[checksumOffsets[c] .. checksumOffsets[c + 1]) share code c
+    private int[] checksumOffsets = new int[1];
+    private int[] checksumFiles = new int[0];
+    private boolean checksumIndexed = true;
+
+    // Live files and directories with a known size, each sorted by size ascending, ties by ordinal
+    private int[] filesBySize = new int[0];
+    private int[] directoriesBySize = new int[0];
+    private boolean sizeOrdered = true;
+
+    // Per-directory file count and bytes by classification; row directorySlots[ordinal], column code + 1
+    private int[] directorySlots = new int[0];
+    private int rollupStride = 1;
+    private long[] rollupCounts = new long[0];
+    private long[] rollupBytes = new long[0];
+    private boolean rolledUp = true;
+
+    private final List<String> classificationNames = new ArrayList<>();
+    private final Map<String, Byte> classificationCodes = new HashMap<>();
+    private final List<BitSet> classificationIndex = new ArrayList<>();
+    private final BitSet allNodes = new BitSet();
+    private boolean frozen;
+    private int[] classificationCounts;
 
     public void addNode(Node node) {
+        checkMutable();
         if (node == null) {
             throw new ValidationException("Node cannot be null");
         }
         if (node.getId() == null) {
             throw new ValidationException("Node ID cannot be null");
         }
-        if (node.getParentId() == null && rootId != null) {
+        addRow(node.getId(),
+                node.getParentId() != null ? node.getParentId() : NO_VALUE,
+                node.getName(),
+                node.getSize() != null ? node.getSize() : NO_VALUE,
+                node.getType(),
+                node.getClassification(),
+                node.getChecksum());
+    }
+
+    /**
+     * Two-phase load for rows in any order: every row is ingested first, then parent/child links
+     * are built in one linear pass, each sibling list is sorted once and the result is validated
+     * as a whole.
+     */
+    public void bulkLoad(Collection<Node> nodes) {
+        if (nodes == null) {
+            throw new ValidationException("Nodes cannot be null");
+        }
+        NodeBuffer buffer = new NodeBuffer(nodes.size());
+        for (Node node : nodes) {
+            if (node == null) {
+                throw new ValidationException("Node cannot be null");
+            }
+            if (node.getId() == null) {
+                throw new ValidationException("Node ID cannot be null");
+            }
+            if (node.getType() == null) {
+                throw new ValidationException("Node type cannot be null for node " + node.getId());
+            }
+            buffer.add(node.getId(),
+                    node.getParentId() != null ? node.getParentId() : NO_VALUE,
+                    node.getName(),
+                    node.getType(),
+                    node.getSize() != null ? node.getSize() : NO_VALUE,
+                    node.getClassification(),
+                    node.getChecksum());
+        }
+        bulkLoad(List.of(buffer), null);
+    }
+
+    /**
+     * Bulk-loads buffered rows straight into the columns, without materializing {@link Node} objects.
+     */
+    public void bulkLoad(NodeBuffer buffer) {
+        if (buffer == null) {
+            throw new ValidationException("Node buffer cannot be null");
+        }
+        bulkLoad(List.of(buffer), null);
+    }
+
+    /**
+     * Appends all buffers in order, then rebuilds the classification index, the name order and
+     * the child links, as parallel tasks when a pool is given.
+     */
+    public void bulkLoad(List<NodeBuffer> buffers, ForkJoinPool pool) {
+        checkMutable();
+        if (buffers == null) {
+            throw new ValidationException("Node buffers cannot be null");
+        }
+        int roots = rootOrdinal != NO_ORDINAL ? 1 : 0;
+        int total = 0;
+        for (NodeBuffer buffer : buffers) {
+            total += buffer.size();
+            for (int row = 0; row < buffer.size(); row++) {
+                if (buffer.getParentId(row) == NO_VALUE) {
+                    roots++;
+                }
+            }
+        }
+        if (roots > 1) {
             throw new ValidationException("Multiple root nodes detected");
         }
 
-        nodes.put(node.getId(), node);
+        IndexBuildEvent event = new IndexBuildEvent();
+        event.begin();
+        ensureCapacity(count + total);
+        for (NodeBuffer buffer : buffers) {
+            // Re-code the buffer's checksum dictionary once instead of interning every row
+            StringDictionary bufferChecksums = buffer.getChecksumDictionary();
+            int[] checksumCodes = new int[bufferChecksums.size()];
+            for (int code = 0; code < checksumCodes.length; code++) {
+                checksumCodes[code] = checksumDictionary.intern(bufferChecksums.get(code));
+            }
+            for (int row = 0; row < buffer.size(); row++) {
+                if (ordinals.containsKey(buffer.getId(row))) {
+                    throw new ValidationException("Duplicate node ID: " + buffer.getId(row));
+                }
+                int checksum = buffer.getChecksumCode(row);
+                appendRow(buffer.getId(row), buffer.getParentId(row),
+                        nameArena.add(buffer.getNameArena(), buffer.getNameAddress(row)), buffer.getSize(row),
+                        buffer.getType(row), buffer.getClassification(row),
+                        checksum != StringDictionary.NO_CODE ? checksumCodes[checksum] : StringDictionary.NO_CODE);
+            }
+        }
+
+        if (pool != null) {
+            pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(
+                    ForkJoinTask.adapt(this::rebuildClassificationIndex),
+                    ForkJoinTask.adapt(this::ensureNameOrdered),
+                    ForkJoinTask.adapt(this::ensureLinked))));
+        } else {
+            rebuildClassificationIndex();
+            ensureNameOrdered();
+            ensureLinked();
+        }
+        validateLinks();
+        if (event.shouldCommit()) {
+            event.phase = "bulkLoad";
+            event.rows = total;
+            event.parallel = pool != null;
+            event.commit();
+        }
+    }
 
-        if (node.getParentId() != null) {
-            Node parent = nodes.get(node.getParentId());
-            if (parent != null && !parent.isDirectory()) {
+    private void addRow(long id, long parentId, String name, long size, NodeType type,
+            String classification, String checksum) {
+        if (parentId == NO_VALUE && rootOrdinal != NO_ORDINAL) {
+            throw new ValidationException("Multiple root nodes detected");
+        }
+
+        if (parentId != NO_VALUE) {
+            int parent = ordinals.get(parentId);
+            if (parent != NO_ORDINAL && types[parent] != NodeType.DIRECTORY.ordinal()) {
                 throw new ValidationException("Only directories can have children");
             }
-            childrenIdMap.computeIfAbsent(node.getParentId(), k -> createSortedChildSet())
-                    .add(node.getId());
-        } else {
-            rootId = node.getId();
         }
 
-        if (node.getClassification() != null) {
-            classificationIndex.computeIfAbsent(node.getClassification(), k -> new HashSet<>())
-                    .add(node.getId());
+        int existing = ordinals.get(id);
+        if (existing != NO_ORDINAL && classifications[existing] != NO_CODE) {
+            classificationIndex.get(classifications[existing]).clear(existing);
         }
-        if (node.isDirectory()) {
-            directoryNameIndex.put(node.getName(), node.getId());
+
+        int ordinal = appendRow(id, parentId, nameArena.add(name), size, type, classification,
+                checksumDictionary.intern(checksum));
+
+        if (classifications[ordinal] != NO_CODE) {
+            classificationIndex.get(classifications[ordinal]).set(ordinal);
         }
     }
 
-    private TreeSet<Long> createSortedChildSet() {
-        return new TreeSet<>((id1, id2) -> {
-            Node n1 = nodes.get(id1);
-            Node n2 = nodes.get(id2);
-            return (n1 == null || n2 == null) ? 0 : n1.getName().compareTo(n2.getName());
+    /**
+     * Writes a row into the columns, reusing the ordinal of an existing id. Leaves the
+     * classification and name indexes to the caller.
+     */
+    private int appendRow(long id, long parentId, long name, long size, NodeType type,
+            String classification, int checksum) {
+        int ordinal = ordinals.get(id);
+        if (ordinal == NO_ORDINAL) {
+            ordinal = count++;
+            ensureCapacity(count);
+            ordinals.put(id, ordinal);
+            allNodes.set(ordinal);
+            liveCount++;
+        }
+
+        ids[ordinal] = id;
+        parentIds[ordinal] = parentId;
+        parents[ordinal] = NO_ORDINAL;
+        names[ordinal] = name;
+        sizes[ordinal] = size;
+        types[ordinal] = type != null ? (byte) type.ordinal() : NO_CODE;
+        classifications[ordinal] = classificationCode(classification);
+        checksums[ordinal] = checksum;
+        linked = false;
+        indexed = false;
+        parentsResolved = false;
+        sized = false;
+        nameOrdered = false;
+        trigramIndex = null;
+        checksumIndexed = false;
+        sizeOrdered = false;
+        rolledUp = false;
+
+        if (parentId == NO_VALUE) {
+            rootOrdinal = ordinal;
+        }
+        return ordinal;
+    }
+
+    /**
+     * Rebuilds every classification bitmap of the live nodes in one pass. Each task owns a
+     * disjoint range of 64-bit words, so the word arrays can be filled without synchronization.
+     */
+    private void rebuildClassificationIndex() {
+        int codes = classificationNames.size();
+        int wordCount = (count + 63) >>> 6;
+        long[][] words = new long[codes][wordCount];
+        byte[] codeColumn = classifications;
+        long[] live = allNodes.toLongArray();
+        ordinalRange(wordCount).forEach(word -> {
+            int from = word << 6;
+            int to = Math.min(from + 64, count);
+            long liveWord = word < live.length ? live[word] : 0L;
+            for (int ordinal = from; ordinal < to; ordinal++) {
+                byte code = codeColumn[ordinal];
+                if (code != NO_CODE && (liveWord & 1L << ordinal) != 0) {
+                    words[code][word] |= 1L << ordinal;
+                }
+            }
         });
+        for (int code = 0; code < codes; code++) {
+            classificationIndex.set(code, BitSet.valueOf(words[code]));
+        }
     }
 
-    public Long computeSubtreeSize(Long nodeId) {
-        long totalSize = 0;
+    /**
+     * Checks the freshly built links as a whole: every parent must exist and be a directory, and
+     * every node must be reachable from the root, which rules out cycles.
+     */
+    private void validateLinks() {
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            int parent = parents[ordinal];
+            if (parentIds[ordinal] != NO_VALUE && parent == NO_ORDINAL) {
+                throw new ValidationException(
+                        "Parent node " + parentIds[ordinal] + " not found for node " + ids[ordinal]);
+            }
+            if (parent != NO_ORDINAL && types[parent] != NodeType.DIRECTORY.ordinal()) {
+                throw new ValidationException("Only directories can have children");
+            }
+        }
+        ensureIndexed();
+        for (int ordinal = allNodes.nextSetBit(0); ordinal >= 0; ordinal = allNodes.nextSetBit(ordinal + 1)) {
+            if (entry[ordinal] == NO_ORDINAL) {
+                throw new ValidationException(
+                        "Node " + ids[ordinal] + " is not reachable from the root (cycle detected)");
+            }
+        }
+    }
 
-        for (Long id : treeTraverser.depthFirstPostOrder(nodeId)) {
-            Node node = nodes.get(id);
-            if (node == null)
+    private IntStream ordinalRange(int size) {
+        IntStream range = IntStream.range(0, size);
+        return size >= PARALLEL_THRESHOLD ? range.parallel() : range;
+    }
+
+    private byte classificationCode(String classification) {
+        if (classification == null) {
+            return NO_CODE;
+        }
+        Byte code = classificationCodes.get(classification);
+        if (code == null) {
+            if (classificationNames.size() > Byte.MAX_VALUE) {
+                throw new ValidationException("Too many distinct classifications, limit is " + (Byte.MAX_VALUE + 1));
+            }
+            code = (byte) classificationNames.size();
+            classificationNames.add(classification);
+            classificationCodes.put(classification, code);
+            classificationIndex.add(new BitSet());
+        }
+        return code;
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, ids.length + (ids.length >> 1));
+        ids = Arrays.copyOf(ids, capacity);
+        parentIds = Arrays.copyOf(parentIds, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        types = Arrays.copyOf(types, capacity);
+        classifications = Arrays.copyOf(classifications, capacity);
+        names = Arrays.copyOf(names, capacity);
+        checksums = Arrays.copyOf(checksums, capacity);
+    }
+
+    /**
+     * Resolves parent ordinals and rebuilds the CSR child arrays with a counting pass,
+     * then sorts each sibling range by name once.
+     */
+    private void ensureLinked() {
+        if (linked) {
+            return;
+        }
+        ensureParentsResolved();
+
+        int[] offsets = new int[count + 1];
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            if (parents[ordinal] != NO_ORDINAL) {
+                offsets[parents[ordinal] + 1]++;
+            }
+        }
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            offsets[ordinal + 1] += offsets[ordinal];
+        }
+        int[] targets = new int[offsets[count]];
+        int[] cursor = Arrays.copyOf(offsets, count);
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            int parent = parents[ordinal];
+            if (parent != NO_ORDINAL) {
+                targets[cursor[parent]++] = ordinal;
+            }
+        }
+        ordinalRange(count).forEach(
+                parent -> IntArrays.sort(targets, offsets[parent], offsets[parent + 1], this::compareByName));
+        childOffsets = offsets;
+        childTargets = targets;
+        linked = true;
+    }
+
+    /**
+     * Resolves the parent ordinal column from parent ids after rows were appended. Mutations keep
+     * the column current themselves, so they only pay for this after a load.
+     */
+    private void ensureParentsResolved() {
+        if (parentsResolved) {
+            return;
+        }
+        ordinalRange(count).forEach(ordinal -> parents[ordinal] =
+                parentIds[ordinal] == NO_VALUE || !allNodes.get(ordinal)
+                        ? NO_ORDINAL
+                        : ordinals.get(parentIds[ordinal]));
+        parentsResolved = true;
+    }
+
+    private int compareByName(int a, int b) {
+        int result = nameArena.compare(names[a], names[b]);
+        return result != 0 ? result : Integer.compare(a, b);
+    }
+
+    private int compareByNameAndId(int a, int b) {
+        int result = nameArena.compare(names[a], names[b]);
+        return result != 0 ? result : Long.compare(ids[a], ids[b]);
+    }
+
+    /**
+     * Sorts the live nodes by name once. Name lookups binary-search this order, and ordered
+     * result cursors walk its files without sorting each result.
+     */
+    private void ensureNameOrdered() {
+        if (nameOrdered) {
+            return;
+        }
+        int[] sorted = new int[liveCount];
+        int position = 0;
+        for (int ordinal = allNodes.nextSetBit(0); ordinal >= 0; ordinal = allNodes.nextSetBit(ordinal + 1)) {
+            sorted[position++] = ordinal;
+        }
+        IntArrays.sort(sorted, 0, position, this::compareByNameAndId);
+        int[] files = new int[position];
+        int fileCount = 0;
+        for (int ordinal : sorted) {
+            if (types[ordinal] == NodeType.FILE.ordinal()) {
+                files[fileCount++] = ordinal;
+            }
+        }
+        files = Arrays.copyOf(files, fileCount);
+        int[] ranks = new int[count];
+        Arrays.fill(ranks, NO_ORDINAL);
+        for (int rank = 0; rank < fileCount; rank++) {
+            ranks[files[rank]] = rank;
+        }
+        nodesByName = sorted;
+        filesByName = files;
+        fileRanks = ranks;
+        nameOrdered = true;
+    }
+
+    /**
+     * Groups the live files by checksum code with a counting sort, two passes over the columns.
+     */
+    private void ensureChecksumIndexed() {
+        if (checksumIndexed) {
+            return;
+        }
+        int[] offsets = new int[checksumDictionary.size() + 1];
+        for (int ordinal = allNodes.nextSetBit(0); ordinal >= 0; ordinal = allNodes.nextSetBit(ordinal + 1)) {
+            if (checksums[ordinal] != StringDictionary.NO_CODE && types[ordinal] == NodeType.FILE.ordinal()) {
+                offsets[checksums[ordinal] + 1]++;
+            }
+        }
+        for (int code = 0; code + 1 < offsets.length; code++) {
+            offsets[code + 1] += offsets[code];
+        }
+        int[] files = new int[offsets[offsets.length - 1]];
+        int[] cursor = Arrays.copyOf(offsets, offsets.length - 1);
+        for (int ordinal = allNodes.nextSetBit(0); ordinal >= 0; ordinal = allNodes.nextSetBit(ordinal + 1)) {
+            if (checksums[ordinal] != StringDictionary.NO_CODE && types[ordinal] == NodeType.FILE.ordinal()) {
+                files[cursor[checksums[ordinal]]++] = ordinal;
+            }
+        }
+        checksumOffsets = offsets;
+        checksumFiles = files;
+        checksumIndexed = true;
+    }
+
+    /**
+     * Sorts the live files and directories by size. Nodes without a size are left out, so
+     * directories only appear once their sizes have been computed.
+     */
+    private void ensureSizeOrdered() {
+        if (sizeOrdered) {
+            return;
+        }
+        int[] files = new int[liveCount];
+        int[] directories = new int[liveCount];
+        int fileCount = 0;
+        int directoryCount = 0;
+        for (int ordinal = allNodes.nextSetBit(0); ordinal >= 0; ordinal = allNodes.nextSetBit(ordinal + 1)) {
+            if (sizes[ordinal] == NO_VALUE) {
                 continue;
+            }
+            if (types[ordinal] == NodeType.DIRECTORY.ordinal()) {
+                directories[directoryCount++] = ordinal;
+            } else {
+                files[fileCount++] = ordinal;
+            }
+        }
+        IntArrays.sort(files, 0, fileCount, this::compareBySize);
+        IntArrays.sort(directories, 0, directoryCount, this::compareBySize);
+        filesBySize = Arrays.copyOf(files, fileCount);
+        directoriesBySize = Arrays.copyOf(directories, directoryCount);
+        sizeOrdered = true;
+    }
 
-            if (node.isDirectory()) {
-                long dirSize = 0;
-                Set<Long> children = childrenIdMap.get(id);
-                if (children != null) {
-                    for (Long childId : children) {
-                        Node child = nodes.get(childId);
-                        if (child != null && child.getSize() != null) {
-                            dirSize += child.getSize();
-                        }
+    private int compareBySize(int a, int b) {
+        int result = Long.compare(sizes[a], sizes[b]);
+        return result != 0 ? result : Integer.compare(a, b);
+    }
+
+    /**
+     * Walks the tree once from the root and numbers nodes in pre-order, so every subtree occupies
+     * the contiguous range {@code preOrder[entry, exit)}.
+     */
+    private void ensureIndexed() {
+        ensureLinked();
+        if (indexed) {
+            return;
+        }
+        int[] order = new int[count];
+        int[] entries = new int[count];
+        int[] exits = new int[count];
+        int[] levels = new int[count];
+        Arrays.fill(entries, NO_ORDINAL);
+        int position = 0;
+
+        if (rootOrdinal != NO_ORDINAL) {
+            int[] stack = new int[INITIAL_CAPACITY];
+            int[] nextChild = new int[INITIAL_CAPACITY];
+            int depth = 0;
+            stack[0] = rootOrdinal;
+            nextChild[0] = childOffsets[rootOrdinal];
+            entries[rootOrdinal] = position;
+            order[position++] = rootOrdinal;
+            while (depth >= 0) {
+                int ordinal = stack[depth];
+                if (nextChild[depth] < childOffsets[ordinal + 1]) {
+                    int child = childTargets[nextChild[depth]++];
+                    if (++depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                        nextChild = Arrays.copyOf(nextChild, depth * 2);
                     }
+                    stack[depth] = child;
+                    nextChild[depth] = childOffsets[child];
+                    levels[child] = depth;
+                    entries[child] = position;
+                    order[position++] = child;
+                    continue;
                 }
-                node.setSize(dirSize);
+                exits[ordinal] = position;
+                depth--;
             }
+        }
+
+        preOrder = order;
+        entry = entries;
+        exit = exits;
+        depths = levels;
+        indexed = true;
+    }
 
-            if (node.getSize() != null) {
-                totalSize = node.getSize();
+    public Long computeSubtreeSize(Long nodeId) {
+        int start = nodeId != null ? ordinals.get(nodeId) : NO_ORDINAL;
+        if (start == NO_ORDINAL) {
+            return 0L;
+        }
+        ensureIndexed();
+        if (frozen || entry[start] == NO_ORDINAL) {
+            return sizes[start] != NO_VALUE ? sizes[start] : 0L;
+        }
+        sizeOrdered = false;
+
+        // Reverse pre-order visits every child before its parent, so one backward scan sums the subtree
+        for (int position = exit[start] - 1; position >= entry[start]; position--) {
+            int ordinal = preOrder[position];
+            if (types[ordinal] == NodeType.DIRECTORY.ordinal()) {
+                long dirSize = 0;
+                for (int i = childOffsets[ordinal]; i < childOffsets[ordinal + 1]; i++) {
+                    long childSize = sizes[childTargets[i]];
+                    if (childSize != NO_VALUE) {
+                        dirSize += childSize;
+                    }
+                }
+                sizes[ordinal] = dirSize;
             }
         }
 
-        return totalSize;
+        return sizes[start] != NO_VALUE ? sizes[start] : 0L;
     }
 
+    /**
+     * Computes every directory size and the per-classification rollups.
+     */
     public void computeAllSizes() {
-        if (rootId != null) {
-            computeSubtreeSize(rootId);
+        ComputeSizesEvent event = new ComputeSizesEvent();
+        event.begin();
+        if (rootOrdinal != NO_ORDINAL) {
+            computeSubtreeSize(ids[rootOrdinal]);
+        }
+        ensureRolledUp();
+        sized = true;
+        if (event.shouldCommit()) {
+            event.nodes = liveCount;
+            event.commit();
+        }
+    }
+
+    /**
+     * Builds the rollups with one reverse pre-order scan: each file adds itself to its parent's
+     * row and each finished directory adds its row to its parent's.
+     */
+    private void ensureRolledUp() {
+        if (rolledUp) {
+            return;
+        }
+        ensureIndexed();
+        int stride = classificationNames.size() + 1;
+        int[] slots = new int[count];
+        Arrays.fill(slots, NO_ORDINAL);
+        int directories = 0;
+        for (int ordinal = allNodes.nextSetBit(0); ordinal >= 0; ordinal = allNodes.nextSetBit(ordinal + 1)) {
+            if (types[ordinal] == NodeType.DIRECTORY.ordinal()) {
+                slots[ordinal] = directories++;
+            }
+        }
+        long[] counts = new long[directories * stride];
+        long[] bytes = new long[directories * stride];
+        for (int position = preOrder.length - 1; position >= 0; position--) {
+            int ordinal = preOrder[position];
+            int parent = parents[ordinal];
+            if (parent == NO_ORDINAL) {
+                continue;
+            }
+            int row = slots[parent] * stride;
+            if (slots[ordinal] == NO_ORDINAL) {
+                int column = classifications[ordinal] + 1;
+                counts[row + column]++;
+                bytes[row + column] += sizes[ordinal] != NO_VALUE ? sizes[ordinal] : 0L;
+            } else {
+                int child = slots[ordinal] * stride;
+                for (int column = 0; column < stride; column++) {
+                    counts[row + column] += counts[child + column];
+                    bytes[row + column] += bytes[child + column];
+                }
+            }
+        }
+        directorySlots = slots;
+        rollupStride = stride;
+        rollupCounts = counts;
+        rollupBytes = bytes;
+        rolledUp = true;
+    }
+
+    /**
+     * Adds ({@code sign} 1) or subtracts ({@code sign} -1) the rollup contribution of a file or
+     * directory to every directory from {@code parent} up to the root.
+     */
+    private void propagateRollup(int parent, int ordinal, int sign) {
+        if (!rolledUp) {
+            return;
+        }
+        for (int ancestor = parent; ancestor != NO_ORDINAL; ancestor = parents[ancestor]) {
+            int row = directorySlots[ancestor] * rollupStride;
+            if (types[ordinal] != NodeType.DIRECTORY.ordinal()) {
+                int column = classifications[ordinal] + 1;
+                rollupCounts[row + column] += sign;
+                rollupBytes[row + column] += sign * (sizes[ordinal] != NO_VALUE ? sizes[ordinal] : 0L);
+            } else {
+                int child = directorySlots[ordinal] * rollupStride;
+                for (int column = 0; column < rollupStride; column++) {
+                    rollupCounts[row + column] += sign * rollupCounts[child + column];
+                    rollupBytes[row + column] += sign * rollupBytes[child + column];
+                }
+            }
+        }
+    }
+
+    /**
+     * Gives a directory inserted after the rollups were built an empty row, or drops the rollups
+     * when the insert introduced a classification they have no column for.
+     */
+    private void extendRollup(int ordinal) {
+        if (classificationNames.size() + 1 != rollupStride) {
+            return;
+        }
+        if (ordinal >= directorySlots.length) {
+            int previous = directorySlots.length;
+            directorySlots = Arrays.copyOf(directorySlots, Math.max(ordinal + 1, previous * 2));
+            Arrays.fill(directorySlots, previous, directorySlots.length, NO_ORDINAL);
+        }
+        if (types[ordinal] == NodeType.DIRECTORY.ordinal()) {
+            int row = rollupCounts.length;
+            directorySlots[ordinal] = row / rollupStride;
+            rollupCounts = Arrays.copyOf(rollupCounts, row + rollupStride);
+            rollupBytes = Arrays.copyOf(rollupBytes, row + rollupStride);
+        }
+        rolledUp = true;
+    }
+
+    /**
+     * Inserts a node into a tree whose sizes are already computed. Unlike {@link #addNode(Node)},
+     * the parent must exist, and the file's size is added to every ancestor right away.
+     */
+    public void insertNode(Node node) {
+        checkMutable();
+        if (node == null) {
+            throw new ValidationException("Node cannot be null");
+        }
+        if (node.getId() == null) {
+            throw new ValidationException("Node ID cannot be null");
+        }
+        if (node.getType() == null) {
+            throw new ValidationException("Node type cannot be null for node " + node.getId());
+        }
+        if (ordinals.containsKey(node.getId())) {
+            throw new ValidationException("Duplicate node ID: " + node.getId());
+        }
+        int parent = NO_ORDINAL;
+        if (node.getParentId() != null) {
+            parent = requireOrdinal(node.getParentId());
+        }
+        ensureParentsResolved();
+        boolean hadRollups = rolledUp;
+        boolean hadSizes = sized;
+
+        addNode(node);
+        int ordinal = ordinals.get(node.getId());
+        parents[ordinal] = parent;
+        parentsResolved = true;
+        sized = hadSizes;
+        if (node.isDirectory()) {
+            sizes[ordinal] = 0;
+        } else if (sizes[ordinal] != NO_VALUE) {
+            propagateSize(parent, sizes[ordinal]);
+        }
+        if (hadRollups) {
+            extendRollup(ordinal);
+            propagateRollup(parent, ordinal, 1);
+        }
+    }
+
+    /**
+     * Removes the node together with its subtree and subtracts its size from every ancestor.
+     * Enumerating the subtree uses the pre-order index, which is rebuilt first if an earlier
+     * structural change invalidated it.
+     */
+    public void removeNode(Long nodeId) {
+        checkMutable();
+        int start = requireOrdinal(nodeId);
+        ensureIndexed();
+
+        long removedSize = sizes[start] != NO_VALUE ? sizes[start] : 0L;
+        propagateSize(parents[start], -removedSize);
+        propagateRollup(parents[start], start, -1);
+
+        int from = entry[start] != NO_ORDINAL ? entry[start] : 0;
+        int to = entry[start] != NO_ORDINAL ? exit[start] : 0;
+        for (int position = from; position < to; position++) {
+            tombstone(preOrder[position]);
+        }
+        if (entry[start] == NO_ORDINAL) {
+            tombstone(start);
+        }
+        relinkChildren(NO_ORDINAL, NO_ORDINAL);
+        indexed = false;
+        if (nameOrdered) {
+            nodesByName = retainLive(nodesByName);
+            filesByName = retainLive(filesByName);
+            int[] ranks = new int[count];
+            Arrays.fill(ranks, NO_ORDINAL);
+            for (int rank = 0; rank < filesByName.length; rank++) {
+                ranks[filesByName[rank]] = rank;
+            }
+            fileRanks = ranks;
+        }
+        if (checksumIndexed) {
+            int[] offsets = new int[checksumOffsets.length];
+            int[] files = new int[checksumFiles.length];
+            int position = 0;
+            for (int code = 0; code + 1 < checksumOffsets.length; code++) {
+                for (int i = checksumOffsets[code]; i < checksumOffsets[code + 1]; i++) {
+                    if (allNodes.get(checksumFiles[i])) {
+                        files[position++] = checksumFiles[i];
+                    }
+                }
+                offsets[code + 1] = position;
+            }
+            checksumOffsets = offsets;
+            checksumFiles = Arrays.copyOf(files, position);
+        }
+        if (sizeOrdered) {
+            filesBySize = retainLive(filesBySize);
+            directoriesBySize = retainLive(directoriesBySize);
+        }
+    }
+
+    /**
+     * Re-parents a node, moving its size from the old ancestor chain to the new one.
+     */
+    public void moveNode(Long nodeId, Long newParentId) {
+        checkMutable();
+        int ordinal = requireOrdinal(nodeId);
+        int newParent = requireOrdinal(newParentId);
+        if (types[newParent] != NodeType.DIRECTORY.ordinal()) {
+            throw new ValidationException("Only directories can have children");
+        }
+        if (parentIds[ordinal] == NO_VALUE) {
+            throw new ValidationException("Cannot move the root node");
+        }
+        ensureParentsResolved();
+        for (int ancestor = newParent; ancestor != NO_ORDINAL; ancestor = parents[ancestor]) {
+            if (ancestor == ordinal) {
+                throw new ValidationException("Cannot move node " + nodeId + " into its own subtree");
+            }
+        }
+
+        long size = sizes[ordinal] != NO_VALUE ? sizes[ordinal] : 0L;
+        propagateSize(parents[ordinal], -size);
+        propagateRollup(parents[ordinal], ordinal, -1);
+        parentIds[ordinal] = newParentId;
+        parents[ordinal] = newParent;
+        propagateSize(newParent, size);
+        propagateRollup(newParent, ordinal, 1);
+        relinkChildren(ordinal, newParent);
+        indexed = false;
+    }
+
+    /**
+     * Rewrites the CSR child arrays in one pass without re-sorting: children that are no longer
+     * live are dropped, and {@code moved}, unless {@link #NO_ORDINAL}, leaves its old sibling
+     * range and is inserted at its name position among the children of {@code newParent}.
+     * Does nothing if the arrays are already due for a rebuild.
+     */
+    private void relinkChildren(int moved, int newParent) {
+        if (!linked) {
+            return;
+        }
+        int[] offsets = new int[count + 1];
+        int[] targets = new int[childTargets.length];
+        int position = 0;
+        for (int parent = 0; parent < count; parent++) {
+            offsets[parent] = position;
+            boolean pending = parent == newParent;
+            for (int i = childOffsets[parent]; i < childOffsets[parent + 1]; i++) {
+                int child = childTargets[i];
+                if (child == moved || !allNodes.get(child)) {
+                    continue;
+                }
+                if (pending && compareByName(moved, child) < 0) {
+                    targets[position++] = moved;
+                    pending = false;
+                }
+                targets[position++] = child;
+            }
+            if (pending) {
+                targets[position++] = moved;
+            }
+        }
+        offsets[count] = position;
+        childOffsets = offsets;
+        childTargets = Arrays.copyOf(targets, position);
+    }
+
+    private int[] retainLive(int[] ordinals) {
+        int[] live = new int[ordinals.length];
+        int position = 0;
+        for (int ordinal : ordinals) {
+            if (allNodes.get(ordinal)) {
+                live[position++] = ordinal;
+            }
+        }
+        return Arrays.copyOf(live, position);
+    }
+
+    /**
+     * Sets a file's size and applies the difference to every ancestor.
+     */
+    public void resizeNode(Long nodeId, long newSize) {
+        checkMutable();
+        int ordinal = requireOrdinal(nodeId);
+        if (types[ordinal] == NodeType.DIRECTORY.ordinal()) {
+            throw new ValidationException("Directory sizes are derived from their contents");
+        }
+        ensureParentsResolved();
+        long oldSize = sizes[ordinal] != NO_VALUE ? sizes[ordinal] : 0L;
+        propagateRollup(parents[ordinal], ordinal, -1);
+        sizes[ordinal] = newSize;
+        sizeOrdered = false;
+        propagateRollup(parents[ordinal], ordinal, 1);
+        propagateSize(parents[ordinal], newSize - oldSize);
+    }
+
+    /**
+     * Adds a size delta to every directory from {@code parent} up to the root: O(depth).
+     */
+    private void propagateSize(int parent, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        sizeOrdered = false;
+        for (int ancestor = parent; ancestor != NO_ORDINAL; ancestor = parents[ancestor]) {
+            sizes[ancestor] = (sizes[ancestor] != NO_VALUE ? sizes[ancestor] : 0L) + delta;
+        }
+    }
+
+    private void tombstone(int ordinal) {
+        long id = ids[ordinal];
+        ordinals.remove(id);
+        allNodes.clear(ordinal);
+        if (classifications[ordinal] != NO_CODE) {
+            classificationIndex.get(classifications[ordinal]).clear(ordinal);
+            classifications[ordinal] = NO_CODE;
+        }
+        if (rootOrdinal == ordinal) {
+            rootOrdinal = NO_ORDINAL;
+        }
+        parentIds[ordinal] = NO_VALUE;
+        parents[ordinal] = NO_ORDINAL;
+        names[ordinal] = ByteArena.NO_ADDRESS;
+        checksums[ordinal] = StringDictionary.NO_CODE;
+        liveCount--;
+    }
+
+    private int requireOrdinal(Long nodeId) {
+        int ordinal = nodeId != null ? ordinals.get(nodeId) : NO_ORDINAL;
+        if (ordinal == NO_ORDINAL) {
+            throw new ValidationException("Node not found: " + nodeId);
+        }
+        return ordinal;
+    }
+
+    /**
+     * Builds every lazily derived index and makes the structure read-only, so it can be shared
+     * by concurrent readers without locking. Use {@link #copy()} to derive a mutable successor.
+     * Directory sizes are recomputed first if rows were appended since the last
+     * {@link #computeAllSizes()}.
+     */
+    public void freeze() {
+        if (frozen) {
+            return;
+        }
+        if (!sized) {
+            computeAllSizes();
+        }
+        IndexBuildEvent event = new IndexBuildEvent();
+        event.begin();
+        ensureIndexed();
+        ensureNameOrdered();
+        ensureChecksumIndexed();
+        ensureSizeOrdered();
+        ensureRolledUp();
+        classificationCounts = classificationIndex.stream().mapToInt(BitSet::cardinality).toArray();
+        frozen = true;
+        if (event.shouldCommit()) {
+            event.phase = "freeze";
+            event.rows = liveCount;
+            event.commit();
+        }
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Returns a mutable deep copy. Column and index arrays that are only ever replaced, never
+     * written in place, are shared with this instance.
+     */
+    public DirectoryStructure copy() {
+        DirectoryStructure copy = new DirectoryStructure();
+        copy.rootOrdinal = rootOrdinal;
+        copy.count = count;
+        copy.liveCount = liveCount;
+        copy.ordinals = ordinals.copy();
+        copy.ids = ids.clone();
+        copy.parentIds = parentIds.clone();
+        copy.parents = parents.clone();
+        copy.sizes = sizes.clone();
+        copy.types = types.clone();
+        copy.classifications = classifications.clone();
+        copy.names = names.clone();
+        copy.checksums = checksums.clone();
+        copy.nameArena = nameArena.fork();
+        copy.checksumDictionary = checksumDictionary.fork();
+        copy.childOffsets = childOffsets;
+        copy.childTargets = childTargets;
+        copy.linked = linked;
+        copy.parentsResolved = parentsResolved;
+        copy.sized = sized;
+        copy.preOrder = preOrder;
+        copy.entry = entry;
+        copy.exit = exit;
+        copy.depths = depths;
+        copy.indexed = indexed;
+        copy.nodesByName = nodesByName;
+        copy.filesByName = filesByName;
+        copy.fileRanks = fileRanks;
+        copy.nameOrdered = nameOrdered;
+        copy.trigramIndex = trigramIndex;
+        copy.checksumOffsets = checksumOffsets;
+        copy.checksumFiles = checksumFiles;
+        copy.checksumIndexed = checksumIndexed;
+        copy.filesBySize = filesBySize;
+        copy.directoriesBySize = directoriesBySize;
+        copy.sizeOrdered = sizeOrdered;
+        copy.directorySlots = directorySlots.clone();
+        copy.rollupStride = rollupStride;
+        copy.rollupCounts = rollupCounts.clone();
+        copy.rollupBytes = rollupBytes.clone();
+        copy.rolledUp = rolledUp;
+        copy.classificationNames.addAll(classificationNames);
+        copy.classificationCodes.putAll(classificationCodes);
+        for (BitSet bits : classificationIndex) {
+            copy.classificationIndex.add((BitSet) bits.clone());
+        }
+        copy.allNodes.or(allNodes);
+        return copy;
+    }
+
+    /**
+     * Writes the frozen structure as a binary snapshot: the columns, computed sizes, child
+     * arrays, pre-order, name order, checksum, size and rollup indexes, the id table and the
+     * classification index. {@link #open(Path)} restores it without parsing or rebuilding.
+     * The snapshot is written to a temporary file next to {@code file} and moved over it
+     * atomically, so a failed save leaves any previous snapshot intact.
+     */
+    public void save(Path file) throws IOException {
+        if (!frozen) {
+            throw new IllegalStateException("Freeze the structure before saving a snapshot");
+        }
+        Path target = file.toAbsolutePath();
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName() + ".", ".tmp");
+        try {
+            try (SnapshotWriter writer = new SnapshotWriter(temp)) {
+                writeSnapshot(writer);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void writeSnapshot(SnapshotWriter writer) throws IOException {
+        writer.writeInt(SNAPSHOT_MAGIC);
+        writer.writeInt(SNAPSHOT_VERSION);
+        writer.writeInt(count);
+        writer.writeInt(liveCount);
+        writer.writeInt(rootOrdinal);
+        ordinals.writeTo(writer);
+
+        writer.writeLongs(ids, count);
+        writer.writeLongs(parentIds, count);
+        writer.writeInts(parents, count);
+        writer.writeLongs(sizes, count);
+        writer.writeBytes(types, count);
+        writer.writeBytes(classifications, count);
+        writer.writeLongs(names, count);
+        writer.writeInts(checksums, count);
+        nameArena.writeTo(writer);
+        checksumDictionary.writeTo(writer);
+
+        writeArray(writer, childOffsets);
+        writeArray(writer, childTargets);
+        writeArray(writer, preOrder);
+        writeArray(writer, entry);
+        writeArray(writer, exit);
+        writeArray(writer, depths);
+        writeArray(writer, nodesByName);
+        writeArray(writer, filesByName);
+        writeArray(writer, fileRanks);
+        writeArray(writer, checksumOffsets);
+        writeArray(writer, checksumFiles);
+        writeArray(writer, filesBySize);
+        writeArray(writer, directoriesBySize);
+        writeArray(writer, directorySlots);
+        writer.writeInt(rollupStride);
+        writeArray(writer, rollupCounts);
+        writeArray(writer, rollupBytes);
+
+        writer.writeInt(classificationNames.size());
+        for (int code = 0; code < classificationNames.size(); code++) {
+            writer.writeString(classificationNames.get(code));
+            writeArray(writer, classificationIndex.get(code).toLongArray());
+        }
+        writeArray(writer, allNodes.toLongArray());
+    }
+
+    /**
+     * Opens a snapshot written by {@link #save(Path)}. The file is memory-mapped and every array
+     * is bulk-copied from the page cache; the result is frozen and ready to query.
+     */
+    public static DirectoryStructure open(Path file) {
+        DirectoryStructure structure = new DirectoryStructure();
+        try (SnapshotReader reader = new SnapshotReader(file)) {
+            if (reader.readInt() != SNAPSHOT_MAGIC) {
+                throw new DataParsingException("Not a directory structure snapshot: " + file);
+            }
+            int version = reader.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new DataParsingException("Unsupported snapshot version " + version + ": " + file);
+            }
+            int count = reader.readInt();
+            structure.count = count;
+            structure.liveCount = reader.readInt();
+            structure.rootOrdinal = reader.readInt();
+            structure.ordinals = LongIntHashMap.readFrom(reader);
+
+            structure.ids = readLongs(reader, count);
+            structure.parentIds = readLongs(reader, count);
+            structure.parents = readInts(reader, count);
+            structure.sizes = readLongs(reader, count);
+            structure.types = readBytes(reader, count);
+            structure.classifications = readBytes(reader, count);
+            structure.names = readLongs(reader, count);
+            structure.checksums = readInts(reader, count);
+            structure.nameArena = ByteArena.readFrom(reader);
+            structure.checksumDictionary = StringDictionary.readFrom(reader);
+
+            structure.childOffsets = readInts(reader);
+            structure.childTargets = readInts(reader);
+            structure.preOrder = readInts(reader);
+            structure.entry = readInts(reader);
+            structure.exit = readInts(reader);
+            structure.depths = readInts(reader);
+            structure.nodesByName = readInts(reader);
+            structure.filesByName = readInts(reader);
+            structure.fileRanks = readInts(reader);
+            structure.checksumOffsets = readInts(reader);
+            structure.checksumFiles = readInts(reader);
+            structure.filesBySize = readInts(reader);
+            structure.directoriesBySize = readInts(reader);
+            structure.directorySlots = readInts(reader);
+            structure.rollupStride = reader.readInt();
+            structure.rollupCounts = readLongs(reader);
+            structure.rollupBytes = readLongs(reader);
+
+            int classificationCount = reader.readInt();
+            for (int code = 0; code < classificationCount; code++) {
+                String classification = reader.readString();
+                structure.classificationCodes.put(classification, (byte) code);
+                structure.classificationNames.add(classification);
+                structure.classificationIndex.add(BitSet.valueOf(readLongs(reader)));
+            }
+            structure.allNodes.or(BitSet.valueOf(readLongs(reader)));
+        }
+        structure.freeze();
+        return structure;
+    }
+
+    private static void writeArray(SnapshotWriter writer, int[] values) throws IOException {
+        writer.writeInt(values.length);
+        writer.writeInts(values, values.length);
+    }
+
+    private static void writeArray(SnapshotWriter writer, long[] values) throws IOException {
+        writer.writeInt(values.length);
+        writer.writeLongs(values, values.length);
+    }
+
+    private static int[] readInts(SnapshotReader reader) {
+        return readInts(reader, reader.readInt());
+    }
+
+    private static int[] readInts(SnapshotReader reader, int length) {
+        int[] values = new int[length];
+        reader.readInts(values, length);
+        return values;
+    }
+
+    private static long[] readLongs(SnapshotReader reader) {
+        return readLongs(reader, reader.readInt());
+    }
+
+    private static long[] readLongs(SnapshotReader reader, int length) {
+        long[] values = new long[length];
+        reader.readLongs(values, length);
+        return values;
+    }
+
+    private static byte[] readBytes(SnapshotReader reader, int length) {
+        byte[] values = new byte[length];
+        reader.readBytes(values, length);
+        return values;
+    }
+
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("DirectoryStructure is frozen; mutate a copy instead");
         }
     }
 
     public Long getRootId() {
-        return rootId;
+        return rootOrdinal != NO_ORDINAL ? ids[rootOrdinal] : null;
     }
 
     public Node getNode(Long id) {
-        return nodes.get(id);
+        if (id == null) {
+            return null;
+        }
+        int ordinal = ordinals.get(id);
+        return ordinal != NO_ORDINAL ? nodeAt(ordinal) : null;
+    }
+
+    /**
+     * Receives the nodes of {@link #walkTree(TreeVisitor)} as ordinals with their depth.
+     */
+    @FunctionalInterface
+    public interface TreeVisitor {
+        void visit(int ordinal, int depth) throws IOException;
+    }
+
+    /**
+     * Visits every node reachable from the root in pre-order, straight from the pre-order index.
+     * No ids are boxed and no nodes are materialized; read the attributes with the
+     * ordinal accessors such as {@link #appendNameAt(int, StringBuilder)}.
+     */
+    public void walkTree(TreeVisitor visitor) throws IOException {
+        if (rootOrdinal == NO_ORDINAL) {
+            return;
+        }
+        ensureIndexed();
+        int[] order = preOrder;
+        int[] levels = depths;
+        for (int position = entry[rootOrdinal]; position < exit[rootOrdinal]; position++) {
+            int ordinal = order[position];
+            visitor.visit(ordinal, levels[ordinal]);
+        }
+    }
+
+    public boolean isDirectoryAt(int ordinal) {
+        return types[ordinal] == NodeType.DIRECTORY.ordinal();
+    }
+
+    /**
+     * Size of the node with this ordinal, or {@link #NO_SIZE} when it has none.
+     */
+    public long getSizeAt(int ordinal) {
+        return sizes[ordinal];
+    }
+
+    public String getClassificationAt(int ordinal) {
+        return classifications[ordinal] != NO_CODE ? classificationNames.get(classifications[ordinal]) : null;
+    }
+
+    public void appendNameAt(int ordinal, StringBuilder target) {
+        nameArena.appendTo(names[ordinal], target);
+    }
+
+    public boolean hasChecksumAt(int ordinal) {
+        return checksums[ordinal] != StringDictionary.NO_CODE;
+    }
+
+    public void appendChecksumAt(int ordinal, StringBuilder target) {
+        checksumDictionary.appendTo(checksums[ordinal], target);
+    }
+
+    /**
+     * Materializes the node with this ordinal, or returns null when the ordinal is not live.
+     */
+    public Node getNodeAt(int ordinal) {
+        return ordinal >= 0 && allNodes.get(ordinal) ? nodeAt(ordinal) : null;
+    }
+
+    /**
+     * Materializes a detached {@link Node} from the columns at the given ordinal; its name and
+     * checksum are decoded from the arena and dictionary only when read.
+     */
+    private Node nodeAt(int ordinal) {
+        return new ArenaNode(
+                ids[ordinal],
+                parentIds[ordinal] != NO_VALUE ? parentIds[ordinal] : null,
+                nameArena,
+                names[ordinal],
+                sizes[ordinal] != NO_VALUE ? sizes[ordinal] : null,
+                types[ordinal] != NO_CODE ? NODE_TYPES[types[ordinal]] : null,
+                classifications[ordinal] != NO_CODE ? classificationNames.get(classifications[ordinal]) : null,
+                checksumDictionary,
+                checksums[ordinal]);
     }
 
     public Set<Long> getAllNodeIds() {
-        return new HashSet<>(nodes.keySet());
+        Set<Long> result = new HashSet<>();
+        for (int ordinal = allNodes.nextSetBit(0); ordinal >= 0; ordinal = allNodes.nextSetBit(ordinal + 1)) {
+            result.add(ids[ordinal]);
+        }
+        return result;
     }
 
     public Set<Node> getNodesByIds(Set<Long> ids) {
-        return ids.stream()
-                .map(nodes::get)
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+        Set<Node> result = new HashSet<>();
+        for (Long id : ids) {
+            Node node = getNode(id);
+            if (node != null) {
+                result.add(node);
+            }
+        }
+        return result;
+    }
+
+    public int getNodeCount() {
+        return liveCount;
+    }
+
+    /**
+     * Bitmap of every node ordinal. The returned set is shared and must not be modified.
+     */
+    public BitSet getAllNodeBits() {
+        return allNodes;
+    }
+
+    /**
+     * Materializes only the nodes whose ordinal bit is set.
+     */
+    public Set<Node> getNodesByOrdinals(BitSet ordinalBits) {
+        Set<Node> result = new HashSet<>(Math.max(16, ordinalBits.cardinality() * 4 / 3 + 1));
+        for (int ordinal = ordinalBits.nextSetBit(0); ordinal >= 0 && ordinal < count; ordinal = ordinalBits
+                .nextSetBit(ordinal + 1)) {
+            result.add(nodeAt(ordinal));
+        }
+        return result;
     }
 
-    public Set<Long> getChildren(Long parentId) {
-        return childrenIdMap.getOrDefault(parentId, new TreeSet<>());
+    /**
+     * Sum of the file sizes whose ordinal bit is set; directories and files without a size are skipped.
+     */
+    public long sumFileSizes(BitSet ordinalBits) {
+        long total = 0;
+        for (int ordinal = ordinalBits.nextSetBit(0); ordinal >= 0 && ordinal < count; ordinal = ordinalBits
+                .nextSetBit(ordinal + 1)) {
+            if (types[ordinal] == NodeType.FILE.ordinal() && sizes[ordinal] != NO_VALUE) {
+                total += sizes[ordinal];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Count, sum, min, max and size histogram of the files whose ordinal bit is set, grouped in
+     * one pass over the bitmap. Groups are ordered by classification name, directory id or depth.
+     */
+    public List<SizeAggregate> aggregateFiles(BitSet ordinalBits, GroupBy groupBy) {
+        if (groupBy == null) {
+            throw new ValidationException("GroupBy cannot be null");
+        }
+        ensureIndexed();
+        SizeAccumulator accumulator = new SizeAccumulator();
+        LongIntHashMap groupSlots = new LongIntHashMap();
+        int[] directories = new int[8];
+        int directoryCount = 0;
+        int maxDepth = 0;
+
+        for (int ordinal = ordinalBits.nextSetBit(0); ordinal >= 0 && ordinal < count; ordinal = ordinalBits
+                .nextSetBit(ordinal + 1)) {
+            if (types[ordinal] != NodeType.FILE.ordinal() || !allNodes.get(ordinal)) {
+                continue;
+            }
+            int slot = switch (groupBy) {
+                case CLASSIFICATION -> classifications[ordinal] + 1;
+                case DEPTH -> {
+                    maxDepth = Math.max(maxDepth, depths[ordinal]);
+                    yield depths[ordinal];
+                }
+                case DIRECTORY -> {
+                    int directory = groupSlots.get(parents[ordinal]);
+                    if (directory == LongIntHashMap.NO_VALUE) {
+                        if (directoryCount == directories.length) {
+                            directories = Arrays.copyOf(directories, directoryCount * 2);
+                        }
+                        directory = directoryCount;
+                        groupSlots.put(parents[ordinal], directory);
+                        directories[directoryCount++] = parents[ordinal];
+                    }
+                    yield directory;
+                }
+            };
+            accumulator.add(slot, sizes[ordinal]);
+        }
+
+        List<SizeAggregate> result = new ArrayList<>();
+        switch (groupBy) {
+            case CLASSIFICATION -> {
+                for (int slot = 0; slot <= classificationNames.size(); slot++) {
+                    if (accumulator.isUsed(slot)) {
+                        result.add(accumulator.toAggregate(slot, slot > 0 ? classificationNames.get(slot - 1) : null));
+                    }
+                }
+                result.sort(Comparator.comparing(SizeAggregate::group, Comparator.nullsFirst(Comparator.naturalOrder())));
+            }
+            case DEPTH -> {
+                for (int slot = 0; slot <= maxDepth; slot++) {
+                    if (accumulator.isUsed(slot)) {
+                        result.add(accumulator.toAggregate(slot, String.valueOf(slot)));
+                    }
+                }
+            }
+            case DIRECTORY -> {
+                int[] slots = new int[directoryCount];
+                for (int slot = 0; slot < slots.length; slot++) {
+                    slots[slot] = slot;
+                }
+                int[] groupDirectories = directories;
+                IntArrays.sort(slots, (a, b) -> Long.compare(
+                        directoryId(groupDirectories[a]), directoryId(groupDirectories[b])));
+                for (int slot : slots) {
+                    int directory = directories[slot];
+                    result.add(accumulator.toAggregate(slot,
+                            directory != NO_ORDINAL ? String.valueOf(ids[directory]) : null));
+                }
+            }
+        }
+        return result;
+    }
+
+    private long directoryId(int ordinal) {
+        return ordinal != NO_ORDINAL ? ids[ordinal] : Long.MIN_VALUE;
+    }
+
+    /**
+     * Number of files under the directory with the given classification, or of every
+     * classification when {@code classification} is null. O(1) once sizes are computed.
+     */
+    public long getRollupFileCount(Long directoryId, String classification) {
+        return rollup(false, directoryId, classification);
+    }
+
+    /**
+     * Total bytes of the files under the directory with the given classification, or of every
+     * classification when {@code classification} is null. O(1) once sizes are computed.
+     */
+    public long getRollupSize(Long directoryId, String classification) {
+        return rollup(true, directoryId, classification);
+    }
+
+    private long rollup(boolean bytes, Long directoryId, String classification) {
+        int ordinal = directoryId != null ? ordinals.get(directoryId) : NO_ORDINAL;
+        if (ordinal == NO_ORDINAL || types[ordinal] != NodeType.DIRECTORY.ordinal()) {
+            return 0;
+        }
+        // The rebuild replaces the arrays, so pick one only after it
+        ensureRolledUp();
+        long[] values = bytes ? rollupBytes : rollupCounts;
+        int row = directorySlots[ordinal] * rollupStride;
+        if (classification == null) {
+            long total = 0;
+            for (int column = 0; column < rollupStride; column++) {
+                total += values[row + column];
+            }
+            return total;
+        }
+        Byte code = classificationCodes.get(classification);
+        return code != null ? values[row + code + 1] : 0;
+    }
+
+    /**
+     * UTF-8 bytes held by the name arena, including names of removed nodes not yet compacted.
+     */
+    public long getNameBytes() {
+        return nameArena.usedBytes();
+    }
+
+    public int getDistinctChecksumCount() {
+        return checksumDictionary.size();
+    }
+
+    /**
+     * Approximate heap bytes of the column arrays and derived indexes, excluding name bytes and
+     * checksum strings.
+     */
+    public long getIndexBytes() {
+        long bytes = (long) ids.length * Long.BYTES * 3 + (long) parents.length * Integer.BYTES
+                + types.length + classifications.length + (long) names.length * Long.BYTES
+                + (long) checksums.length * Integer.BYTES + (long) ordinals.size() * (Long.BYTES + Integer.BYTES) * 2;
+        long ints = childOffsets.length + childTargets.length + preOrder.length + entry.length + exit.length
+                + depths.length + nodesByName.length + filesByName.length + fileRanks.length
+                + checksumOffsets.length + checksumFiles.length + filesBySize.length + directoriesBySize.length
+                + directorySlots.length;
+        bytes += ints * Integer.BYTES + (rollupCounts.length + rollupBytes.length) * (long) Long.BYTES;
+        for (BitSet bits : classificationIndex) {
+            bytes += bits.size() / 8;
+        }
+        return bytes + allNodes.size() / 8;
+    }
+
+    /**
+     * Number of live files, which is also the exclusive upper bound of file name ranks.
+     */
+    public int getFileCount() {
+        ensureNameOrdered();
+        return filesByName.length;
+    }
+
+    /**
+     * Ordinal of the file at this position of the name order.
+     */
+    public int getFileOrdinalByRank(int rank) {
+        ensureNameOrdered();
+        return filesByName[rank];
+    }
+
+    /**
+     * Position of the file in the name order, or -1 for directories and removed nodes.
+     */
+    public int getFileRank(int ordinal) {
+        ensureNameOrdered();
+        return ordinal >= 0 && ordinal < fileRanks.length ? fileRanks[ordinal] : NO_ORDINAL;
+    }
+
+    /**
+     * First name rank whose file sorts after {@code (name, id)}; lets a cursor resume after the
+     * last file it returned even if that file has since been removed.
+     */
+    public int getFileRankAfter(String name, long id) {
+        ensureNameOrdered();
+        int low = 0;
+        int high = filesByName.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int ordinal = filesByName[middle];
+            int order = nameArena.compare(names[ordinal], name);
+            if (order < 0 || order == 0 && ids[ordinal] <= id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    public List<Long> getChildren(Long parentId) {
+        int parent = parentId != null ? ordinals.get(parentId) : NO_ORDINAL;
+        if (parent == NO_ORDINAL) {
+            return Collections.emptyList();
+        }
+        ensureLinked();
+        int from = childOffsets[parent];
+        int to = childOffsets[parent + 1];
+        List<Long> children = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            children.add(ids[childTargets[i]]);
+        }
+        return children;
+    }
+
+    /**
+     * Id of the node at a path such as {@code /folder2/folder11/folder3}, whose first component
+     * names the root, or null when nothing is there. Each component is a binary search among the
+     * children of the previous one, which are already sorted by name, so no path index is kept.
+     * Among same-named siblings the first in child order wins.
+     */
+    public Long resolvePath(String path) {
+        if (path == null || !path.startsWith("/")) {
+            throw new ValidationException("Path must start with '/': " + path);
+        }
+        if (rootOrdinal == NO_ORDINAL) {
+            return null;
+        }
+        ensureLinked();
+        int from = 1;
+        int ordinal = NO_ORDINAL;
+        while (from <= path.length()) {
+            int to = path.indexOf('/', from);
+            if (to < 0) {
+                to = path.length();
+            }
+            String component = path.substring(from, to);
+            if (component.isEmpty()) {
+                return null;
+            }
+            ordinal = ordinal == NO_ORDINAL
+                    ? nameArena.compare(names[rootOrdinal], component) == 0 ? rootOrdinal : NO_ORDINAL
+                    : findChild(ordinal, component);
+            if (ordinal == NO_ORDINAL) {
+                return null;
+            }
+            from = to + 1;
+        }
+        return ordinal != NO_ORDINAL ? ids[ordinal] : null;
+    }
+
+    private int findChild(int parent, String name) {
+        int low = childOffsets[parent];
+        int high = childOffsets[parent + 1];
+        int end = high;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (nameArena.compare(names[childTargets[middle]], name) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low < end && nameArena.compare(names[childTargets[low]], name) == 0 ? childTargets[low] : NO_ORDINAL;
+    }
+
+    /**
+     * Full path of the node, rebuilt from parent pointers in O(depth); null for unknown ids.
+     */
+    public String getPath(Long id) {
+        int ordinal = id != null ? ordinals.get(id) : NO_ORDINAL;
+        if (ordinal == NO_ORDINAL) {
+            return null;
+        }
+        ensureParentsResolved();
+        List<String> components = new ArrayList<>();
+        for (int ancestor = ordinal; ancestor != NO_ORDINAL; ancestor = parents[ancestor]) {
+            components.add(nameArena.getString(names[ancestor]));
+        }
+        StringBuilder path = new StringBuilder();
+        for (int i = components.size() - 1; i >= 0; i--) {
+            path.append('/').append(components.get(i));
+        }
+        return path.toString();
     }
 
     public Iterable<Long> getTreeTraversal(Long rootId) {
-        return treeTraverser.depthFirstPreOrder(rootId);
+        int start = rootId != null ? ordinals.get(rootId) : NO_ORDINAL;
+        if (start == NO_ORDINAL) {
+            return Collections.emptyList();
+        }
+        ensureIndexed();
+        if (entry[start] == NO_ORDINAL) {
+            return Collections.singletonList(rootId);
+        }
+        int from = entry[start];
+        int to = exit[start];
+        int[] order = preOrder;
+        return () -> new Iterator<>() {
+            private int position = from;
+
+            @Override
+            public boolean hasNext() {
+                return position < to;
+            }
+
+            @Override
+            public Long next() {
+                if (position >= to) {
+                    throw new NoSuchElementException();
+                }
+                return ids[order[position++]];
+            }
+        };
+    }
+
+    /**
+     * Distance from the root, which has depth 0, or -1 when the node is unknown or unreachable.
+     */
+    public int getDepth(Long id) {
+        int ordinal = id != null ? ordinals.get(id) : NO_ORDINAL;
+        if (ordinal == NO_ORDINAL) {
+            return NO_ORDINAL;
+        }
+        ensureIndexed();
+        return entry[ordinal] != NO_ORDINAL ? depths[ordinal] : NO_ORDINAL;
+    }
+
+    /**
+     * Ordinal bitmap of the given node and all its descendants, filled from its pre-order range.
+     */
+    public BitSet getSubtreeBits(Long rootId) {
+        BitSet bits = new BitSet(count);
+        int start = rootId != null ? ordinals.get(rootId) : NO_ORDINAL;
+        if (start == NO_ORDINAL) {
+            return bits;
+        }
+        ensureIndexed();
+        if (entry[start] == NO_ORDINAL) {
+            bits.set(start);
+            return bits;
+        }
+        for (int position = entry[start]; position < exit[start]; position++) {
+            bits.set(preOrder[position]);
+        }
+        return bits;
+    }
+
+    /**
+     * Number of nodes in the subtree rooted at the given node, including the node itself.
+     */
+    public int getSubtreeNodeCount(Long rootId) {
+        int start = rootId != null ? ordinals.get(rootId) : NO_ORDINAL;
+        if (start == NO_ORDINAL) {
+            return 0;
+        }
+        ensureIndexed();
+        return entry[start] == NO_ORDINAL ? 1 : exit[start] - entry[start];
+    }
+
+    /**
+     * O(1) ancestor check using pre-order intervals. A node counts as its own descendant.
+     */
+    public boolean isDescendant(Long nodeId, Long ancestorId) {
+        int node = nodeId != null ? ordinals.get(nodeId) : NO_ORDINAL;
+        int ancestor = ancestorId != null ? ordinals.get(ancestorId) : NO_ORDINAL;
+        if (node == NO_ORDINAL || ancestor == NO_ORDINAL) {
+            return false;
+        }
+        ensureIndexed();
+        return node == ancestor || inSubtree(node, ancestor);
+    }
+
+    /**
+     * Dense ordinal of the node, or -1 when no node has the id.
+     */
+    public int getOrdinal(Long id) {
+        return id != null ? ordinals.get(id) : NO_ORDINAL;
+    }
+
+    /**
+     * O(1) pre-order interval probe on ordinals; a node counts as part of its own subtree.
+     */
+    public boolean isInSubtree(int ordinal, int rootOrdinal) {
+        ensureIndexed();
+        return ordinal == rootOrdinal || inSubtree(ordinal, rootOrdinal);
+    }
+
+    private boolean inSubtree(int ordinal, int ancestor) {
+        int position = entry[ordinal];
+        return position != NO_ORDINAL && entry[ancestor] != NO_ORDINAL
+                && position >= entry[ancestor] && position < exit[ancestor];
+    }
+
+    /**
+     * Intersects {@code bits} with the subtree of {@code rootId} in place, or subtracts it when
+     * {@code negate} is set. Each set bit is checked against the subtree's pre-order range, so no
+     * subtree bitmap is built.
+     */
+    public void retainSubtree(BitSet bits, Long rootId, boolean negate) {
+        int start = rootId != null ? ordinals.get(rootId) : NO_ORDINAL;
+        if (start == NO_ORDINAL) {
+            if (!negate) {
+                bits.clear();
+            }
+            return;
+        }
+        ensureIndexed();
+        for (int ordinal = bits.nextSetBit(0); ordinal >= 0; ordinal = bits.nextSetBit(ordinal + 1)) {
+            boolean inside = ordinal == start || inSubtree(ordinal, start);
+            if (inside == negate) {
+                bits.clear(ordinal);
+            }
+        }
     }
 
     public Set<Long> getNodesByClassification(String classification) {
-        return classificationIndex.getOrDefault(classification, Collections.emptySet());
+        BitSet bits = getClassificationBits(classification);
+        Set<Long> result = new HashSet<>();
+        for (int ordinal = bits.nextSetBit(0); ordinal >= 0; ordinal = bits.nextSetBit(ordinal + 1)) {
+            result.add(ids[ordinal]);
+        }
+        return result;
+    }
+
+    /**
+     * Ordinal bitmap of the nodes with the given classification. The returned set is shared and must not be modified.
+     */
+    public BitSet getClassificationBits(String classification) {
+        Byte code = classification != null ? classificationCodes.get(classification) : null;
+        return code != null ? classificationIndex.get(code) : new BitSet();
     }
 
+    /**
+     * Number of nodes with the given classification; cached once the structure is frozen.
+     */
+    public int getClassificationCount(String classification) {
+        Byte code = classification != null ? classificationCodes.get(classification) : null;
+        if (code == null) {
+            return 0;
+        }
+        return classificationCounts != null ? classificationCounts[code] : classificationIndex.get(code).cardinality();
+    }
+
+    /**
+     * Id of the directory with this exact name, or null if there is none. When several
+     * directories share the name, the one with the lowest id is returned; use
+     * {@link #getDirectoryIdsByName(String)} to get all of them.
+     */
     public Long getDirectoryIdByName(String name) {
-        return directoryNameIndex.get(name);
+        List<Long> directories = getDirectoryIdsByName(name);
+        return directories.isEmpty() ? null : directories.get(0);
+    }
+
+    /**
+     * Ids of all directories with this exact name, in ascending order.
+     */
+    public List<Long> getDirectoryIdsByName(String name) {
+        List<Long> directories = new ArrayList<>();
+        if (name == null) {
+            return directories;
+        }
+        ensureNameOrdered();
+        for (int position = lowerBound(name); position < nodesByName.length; position++) {
+            int ordinal = nodesByName[position];
+            if (nameArena.compare(names[ordinal], name) != 0) {
+                break;
+            }
+            if (types[ordinal] == NodeType.DIRECTORY.ordinal()) {
+                directories.add(ids[ordinal]);
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * Ordinal bitmap of the files whose size lies in {@code [min, max]}: one contiguous run of
+     * the size order, found by binary search.
+     */
+    public BitSet getFilesBySizeRange(long min, long max) {
+        return lookupFilesBySizeRange(min, max).materialize();
+    }
+
+    /**
+     * Lazy form of {@link #getFilesBySizeRange(long, long)}: the run is found up front, but its
+     * bitmap is only built if asked for.
+     */
+    public NodeLookup lookupFilesBySizeRange(long min, long max) {
+        ensureSizeOrdered();
+        int[] order = filesBySize;
+        return new OrdinalRun(order, sizeBound(order, min, false), sizeBound(order, max, true), true,
+                ordinal -> allNodes.get(ordinal) && types[ordinal] != NodeType.DIRECTORY.ordinal()
+                        && sizes[ordinal] != NO_VALUE && sizes[ordinal] >= min && sizes[ordinal] <= max);
+    }
+
+    /**
+     * Number of files whose size lies in {@code [min, max]}, in O(log n).
+     */
+    public int countFilesBySizeRange(long min, long max) {
+        ensureSizeOrdered();
+        return Math.max(sizeBound(filesBySize, max, true) - sizeBound(filesBySize, min, false), 0);
+    }
+
+    /**
+     * First position of the size order whose size is above {@code size}, or at or above it
+     * unless {@code inclusive}.
+     */
+    private int sizeBound(int[] order, long size, boolean inclusive) {
+        int low = 0;
+        int high = order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long value = sizes[order[middle]];
+            if (value < size || inclusive && value == size) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Up to {@code limit} largest files in the subtree of {@code rootId}, largest first.
+     */
+    public List<Node> getLargestFiles(Long rootId, int limit) {
+        ensureSizeOrdered();
+        return largest(filesBySize, rootId, limit);
+    }
+
+    /**
+     * Up to {@code limit} largest directories below {@code rootId}, largest first; the root
+     * itself is not included.
+     */
+    public List<Node> getLargestDirectories(Long rootId, int limit) {
+        ensureSizeOrdered();
+        return largest(directoriesBySize, rootId, limit);
+    }
+
+    /**
+     * Top-K within a subtree. A large subtree walks the global size order down from the largest
+     * entry and keeps members, which takes about k * n / m steps for a subtree of m nodes. A
+     * small one sorts its own pre-order range instead, which costs m log m.
+     */
+    private List<Node> largest(int[] order, Long rootId, int limit) {
+        if (limit <= 0) {
+            throw new ValidationException("Limit must be positive");
+        }
+        int root = rootId != null ? ordinals.get(rootId) : NO_ORDINAL;
+        List<Node> result = new ArrayList<>(Math.min(limit, order.length));
+        if (root == NO_ORDINAL) {
+            return result;
+        }
+        ensureIndexed();
+        if (entry[root] == NO_ORDINAL) {
+            return result;
+        }
+        int subtreeSize = exit[root] - entry[root];
+        if ((long) subtreeSize * 64 >= liveCount) {
+            for (int position = order.length - 1; position >= 0 && result.size() < limit; position--) {
+                int ordinal = order[position];
+                if (ordinal != root && isInSubtree(ordinal, root)) {
+                    result.add(nodeAt(ordinal));
+                }
+            }
+            return result;
+        }
+
+        boolean directories = order == directoriesBySize;
+        int[] members = new int[subtreeSize];
+        int memberCount = 0;
+        for (int position = entry[root]; position < exit[root]; position++) {
+            int ordinal = preOrder[position];
+            if (ordinal != root && sizes[ordinal] != NO_VALUE
+                    && (types[ordinal] == NodeType.DIRECTORY.ordinal()) == directories) {
+                members[memberCount++] = ordinal;
+            }
+        }
+        IntArrays.sort(members, 0, memberCount, (a, b) -> compareBySize(b, a));
+        for (int i = 0; i < memberCount && i < limit; i++) {
+            result.add(nodeAt(members[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Ordinal bitmap of the files with this checksum, read from one slice of the checksum index.
+     */
+    public BitSet getNodesByChecksum(String checksum) {
+        return lookupByChecksum(checksum).materialize();
+    }
+
+    /**
+     * Lazy form of {@link #getNodesByChecksum(String)}.
+     */
+    public NodeLookup lookupByChecksum(String checksum) {
+        int code = checksum != null ? checksumDictionary.find(checksum) : StringDictionary.NO_CODE;
+        if (code == StringDictionary.NO_CODE) {
+            return new OrdinalRun(new int[0], 0, 0, true, ordinal -> false);
+        }
+        ensureChecksumIndexed();
+        int[] offsets = checksumOffsets;
+        if (code + 1 >= offsets.length) {
+            return new OrdinalRun(checksumFiles, 0, 0, true, ordinal -> false);
+        }
+        return new OrdinalRun(checksumFiles, offsets[code], offsets[code + 1], true,
+                ordinal -> allNodes.get(ordinal) && checksums[ordinal] == code
+                        && types[ordinal] == NodeType.FILE.ordinal());
+    }
+
+    /**
+     * Groups of two or more files sharing a checksum, most wasted bytes first, at most
+     * {@code limit} of them. The per-checksum totals are computed in parallel over slices of the
+     * checksum index; only the groups returned are materialized.
+     */
+    public List<DuplicateGroup> getDuplicateGroups(int limit) {
+        if (limit <= 0) {
+            throw new ValidationException("Limit must be positive");
+        }
+        ensureChecksumIndexed();
+        int codes = checksumOffsets.length - 1;
+        long[] totals = new long[codes];
+        long[] wasted = new long[codes];
+        ordinalRange(codes).forEach(code -> {
+            long total = 0;
+            long largest = 0;
+            for (int i = checksumOffsets[code]; i < checksumOffsets[code + 1]; i++) {
+                long size = Math.max(sizes[checksumFiles[i]], 0L);
+                total += size;
+                largest = Math.max(largest, size);
+            }
+            totals[code] = total;
+            wasted[code] = total - largest;
+        });
+
+        int[] groups = ordinalRange(codes)
+                .filter(code -> checksumOffsets[code + 1] - checksumOffsets[code] > 1)
+                .toArray();
+        IntArrays.sort(groups, (a, b) -> wasted[a] != wasted[b]
+                ? Long.compare(wasted[b], wasted[a])
+                : checksumDictionary.get(a).compareTo(checksumDictionary.get(b)));
+
+        List<DuplicateGroup> result = new ArrayList<>(Math.min(limit, groups.length));
+        for (int i = 0; i < groups.length && i < limit; i++) {
+            int code = groups[i];
+            long[] fileIds = new long[checksumOffsets[code + 1] - checksumOffsets[code]];
+            for (int file = 0; file < fileIds.length; file++) {
+                fileIds[file] = ids[checksumFiles[checksumOffsets[code] + file]];
+            }
+            Arrays.sort(fileIds);
+            result.add(new DuplicateGroup(checksumDictionary.get(code), Arrays.stream(fileIds).boxed().toList(),
+                    totals[code], wasted[code]));
+        }
+        return result;
+    }
+
+    /**
+     * Ordinal bitmap of the files and directories named exactly {@code name}: a binary search
+     * over the name order, O(log n + matches).
+     */
+    public BitSet getNodesByName(String name) {
+        return lookupByName(name).materialize();
+    }
+
+    /**
+     * Lazy form of {@link #getNodesByName(String)}; both ends of the run are binary-searched, so
+     * the estimate costs O(log n) whatever the number of matches.
+     */
+    public NodeLookup lookupByName(String name) {
+        ensureNameOrdered();
+        int[] order = nodesByName;
+        if (name == null) {
+            return new OrdinalRun(order, 0, 0, true, ordinal -> false);
+        }
+        int from = lowerBound(name);
+        return new OrdinalRun(order, from, runEnd(order, from, ordinal -> nameArena.compare(names[ordinal], name) == 0),
+                true, ordinal -> allNodes.get(ordinal) && nameArena.compare(names[ordinal], name) == 0);
+    }
+
+    /**
+     * Ordinal bitmap of the nodes whose name starts with {@code prefix}. Those names form one
+     * contiguous run of the name order, found by binary search.
+     */
+    public BitSet getNodesByNamePrefix(String prefix) {
+        return lookupByNamePrefix(prefix).materialize();
+    }
+
+    /**
+     * Lazy form of {@link #getNodesByNamePrefix(String)}.
+     */
+    public NodeLookup lookupByNamePrefix(String prefix) {
+        ensureNameOrdered();
+        int[] order = nodesByName;
+        if (prefix == null) {
+            return new OrdinalRun(order, 0, 0, true, ordinal -> false);
+        }
+        int from = lowerBound(prefix);
+        return new OrdinalRun(order, from, runEnd(order, from, ordinal -> nameArena.startsWith(names[ordinal], prefix)),
+                true, ordinal -> allNodes.get(ordinal) && nameArena.startsWith(names[ordinal], prefix));
+    }
+
+    /**
+     * Ordinal bitmap of the nodes whose name matches the glob, where {@code *} matches any run of
+     * characters and {@code ?} a single one. A literal prefix narrows the candidates to a range of
+     * the name order; otherwise the rarest trigram of the pattern's literals picks them from the
+     * trigram index. Only patterns without a three-byte literal scan every node.
+     */
+    public BitSet getNodesByNameGlob(String pattern) {
+        return lookupByNameGlob(pattern).materialize();
+    }
+
+    /**
+     * Lazy form of {@link #getNodesByNameGlob(String)}. The candidates are picked up front and
+     * their number is the estimate, an upper bound; each candidate is only matched against the
+     * pattern when tested or materialized.
+     */
+    public NodeLookup lookupByNameGlob(String pattern) {
+        NameGlob glob = NameGlob.compile(pattern);
+        ensureNameOrdered();
+        int[] order = nodesByName;
+        IntPredicate matching = ordinal -> allNodes.get(ordinal) && glob.matches(nameArena.getString(names[ordinal]));
+        String prefix = glob.literalPrefix();
+        if (!prefix.isEmpty()) {
+            int from = lowerBound(prefix);
+            return new OrdinalRun(order, from, runEnd(order, from, ordinal -> nameArena.startsWith(names[ordinal], prefix)),
+                    false, matching);
+        }
+        int[] candidates = trigramIndex().candidates(glob.literals());
+        if (candidates == null) {
+            candidates = order;
+        }
+        return new OrdinalRun(candidates, 0, candidates.length, false, matching);
+    }
+
+    /**
+     * First position at or after {@code from} whose ordinal is not in the run; the run must be a
+     * contiguous stretch of {@code order} starting at {@code from}.
+     */
+    private static int runEnd(int[] order, int from, IntPredicate inRun) {
+        int low = from;
+        int high = order.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (inRun.test(order[middle])) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * First position of the name order whose name does not sort before {@code name}.
+     */
+    private int lowerBound(String name) {
+        int low = 0;
+        int high = nodesByName.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (nameArena.compare(names[nodesByName[middle]], name) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private NameTrigramIndex trigramIndex() {
+        NameTrigramIndex index = trigramIndex;
+        if (index == null) {
+            synchronized (this) {
+                index = trigramIndex;
+                if (index == null) {
+                    index = NameTrigramIndex.build(nameArena, names, allNodes);
+                    trigramIndex = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Positions {@code [from, to)} of an index order. When {@code exact}, every position in the
+     * run matches; otherwise the run only holds candidates that are filtered on the way out.
+     */
+    private final class OrdinalRun extends NodeLookup {
+        private final int[] order;
+        private final int from;
+        private final int to;
+        private final boolean exact;
+        private final IntPredicate matching;
+
+        OrdinalRun(int[] order, int from, int to, boolean exact, IntPredicate matching) {
+            this.order = order;
+            this.from = from;
+            this.to = Math.max(to, from);
+            this.exact = exact;
+            this.matching = matching;
+        }
+
+        @Override
+        public long estimate() {
+            return to - from;
+        }
+
+        @Override
+        public boolean isExact() {
+            return exact;
+        }
+
+        @Override
+        public boolean test(int ordinal) {
+            return matching.test(ordinal);
+        }
+
+        @Override
+        public void addTo(BitSet target) {
+            for (int position = from; position < to; position++) {
+                int ordinal = order[position];
+                if (exact || matching.test(ordinal)) {
+                    target.set(ordinal);
+                }
+            }
+        }
+
+        @Override
+        public BitSet materialize() {
+            BitSet bits = new BitSet(count);
+            addTo(bits);
+            return bits;
+        }
     }
 }
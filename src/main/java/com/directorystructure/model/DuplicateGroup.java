@@ -0,0 +1,13 @@
+package com.directorystructure.model;
+
+import java.util.List;
+
+/**
+ * Files that share a checksum. Files without a size count as empty.
+ *
+ * @param fileIds     ids of the files, ascending
+ * @param totalBytes  combined size of all the files
+ * @param wastedBytes bytes that removing every copy but the largest would free
+ */
+public record DuplicateGroup(String checksum, List<Long> fileIds, long totalBytes, long wastedBytes) {
+}
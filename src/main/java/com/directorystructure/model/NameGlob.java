@@ -0,0 +1,73 @@
+package com.directorystructure.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import com.directorystructure.exceptions.ValidationException;
+
+/**
+ * Compiled glob over node names: {@code *} matches any run of characters and {@code ?} exactly
+ * one. Besides a matcher, it exposes the literal prefix and the literal segments between
+ * wildcards, which the name indexes use to narrow candidates before matching.
+ */
+final class NameGlob {
+
+    private final String literalPrefix;
+    private final List<byte[]> literals;
+    private final Pattern pattern;
+
+    private NameGlob(String literalPrefix, List<byte[]> literals, Pattern pattern) {
+        this.literalPrefix = literalPrefix;
+        this.literals = literals;
+        this.pattern = pattern;
+    }
+
+    static NameGlob compile(String glob) {
+        if (glob == null || glob.isEmpty()) {
+            throw new ValidationException("Name pattern cannot be null or empty");
+        }
+        StringBuilder regex = new StringBuilder();
+        List<byte[]> literals = new ArrayList<>();
+        String literalPrefix = null;
+        int segmentStart = 0;
+        for (int i = 0; i <= glob.length(); i++) {
+            char c = i < glob.length() ? glob.charAt(i) : '*';
+            if (c != '*' && c != '?') {
+                continue;
+            }
+            String segment = glob.substring(segmentStart, i);
+            if (literalPrefix == null) {
+                literalPrefix = segment;
+            }
+            if (!segment.isEmpty()) {
+                literals.add(segment.getBytes(StandardCharsets.UTF_8));
+                regex.append(Pattern.quote(segment));
+            }
+            if (i < glob.length()) {
+                regex.append(c == '*' ? ".*" : ".");
+            }
+            segmentStart = i + 1;
+        }
+        return new NameGlob(literalPrefix, literals, Pattern.compile(regex.toString(), Pattern.DOTALL));
+    }
+
+    /**
+     * Characters before the first wildcard; every matching name starts with them.
+     */
+    String literalPrefix() {
+        return literalPrefix;
+    }
+
+    /**
+     * UTF-8 bytes of every literal run between wildcards; every matching name contains each of them.
+     */
+    List<byte[]> literals() {
+        return literals;
+    }
+
+    boolean matches(String name) {
+        return name != null && pattern.matcher(name).matches();
+    }
+}
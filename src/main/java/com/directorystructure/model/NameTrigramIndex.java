@@ -0,0 +1,102 @@
+package com.directorystructure.model;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import com.directorystructure.util.ByteArena;
+
+/**
+ * Posting lists of node ordinals per byte trigram of their name, hashed into a fixed number of
+ * buckets and stored as CSR arrays. Collisions only add candidates, which are verified against
+ * the pattern anyway. Serves globs without a literal prefix, such as {@code *report*}.
+ */
+final class NameTrigramIndex {
+
+    private static final int BUCKETS = 1 << 16;
+
+    private final int[] offsets;
+    private final int[] postings;
+
+    private NameTrigramIndex(int[] offsets, int[] postings) {
+        this.offsets = offsets;
+        this.postings = postings;
+    }
+
+    static NameTrigramIndex build(ByteArena arena, long[] names, BitSet live) {
+        int[] counts = new int[BUCKETS + 1];
+        int[] lastOrdinal = new int[BUCKETS];
+        Arrays.fill(lastOrdinal, -1);
+        byte[] scratch = new byte[64];
+        for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+            if (names[ordinal] == ByteArena.NO_ADDRESS) {
+                continue;
+            }
+            scratch = load(arena, names[ordinal], scratch);
+            int length = arena.length(names[ordinal]);
+            for (int i = 0; i + 3 <= length; i++) {
+                int bucket = bucket(scratch, i);
+                if (lastOrdinal[bucket] != ordinal) {
+                    lastOrdinal[bucket] = ordinal;
+                    counts[bucket + 1]++;
+                }
+            }
+        }
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket + 1] += counts[bucket];
+        }
+
+        int[] postings = new int[counts[BUCKETS]];
+        int[] cursor = Arrays.copyOf(counts, BUCKETS);
+        Arrays.fill(lastOrdinal, -1);
+        for (int ordinal = live.nextSetBit(0); ordinal >= 0; ordinal = live.nextSetBit(ordinal + 1)) {
+            if (names[ordinal] == ByteArena.NO_ADDRESS) {
+                continue;
+            }
+            scratch = load(arena, names[ordinal], scratch);
+            int length = arena.length(names[ordinal]);
+            for (int i = 0; i + 3 <= length; i++) {
+                int bucket = bucket(scratch, i);
+                if (lastOrdinal[bucket] != ordinal) {
+                    lastOrdinal[bucket] = ordinal;
+                    postings[cursor[bucket]++] = ordinal;
+                }
+            }
+        }
+        return new NameTrigramIndex(counts, postings);
+    }
+
+    /**
+     * Ordinals whose names contain the rarest trigram of the literals, or null when no literal
+     * is long enough to have a trigram.
+     */
+    int[] candidates(List<byte[]> literals) {
+        int bestFrom = -1;
+        int bestTo = -1;
+        for (byte[] literal : literals) {
+            for (int i = 0; i + 3 <= literal.length; i++) {
+                int bucket = bucket(literal, i);
+                if (bestFrom < 0 || offsets[bucket + 1] - offsets[bucket] < bestTo - bestFrom) {
+                    bestFrom = offsets[bucket];
+                    bestTo = offsets[bucket + 1];
+                }
+            }
+        }
+        return bestFrom < 0 ? null : Arrays.copyOfRange(postings, bestFrom, bestTo);
+    }
+
+    private static byte[] load(ByteArena arena, long address, byte[] scratch) {
+        int length = arena.length(address);
+        if (length > scratch.length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        arena.copyTo(address, scratch);
+        return scratch;
+    }
+
+    private static int bucket(byte[] bytes, int from) {
+        int hash = ((bytes[from] & 0xff) << 16) | ((bytes[from + 1] & 0xff) << 8) | (bytes[from + 2] & 0xff);
+        hash *= 0x9E3779B1;
+        return hash >>> 16;
+    }
+}
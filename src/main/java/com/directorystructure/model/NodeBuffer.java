@@ -0,0 +1,168 @@
+package com.directorystructure.model;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.directorystructure.util.ByteArena;
+import com.directorystructure.util.StringDictionary;
+
+/**
+ * Growable columnar buffer of parsed rows. Lets a parser hand rows to {@link DirectoryStructure}
+ * without allocating a {@link Node} and boxed numbers per row. Names go into a byte arena and
+ * checksums into a dictionary, so no String is created per row either.
+ */
+public class NodeBuffer {
+
+    /** Marker for an absent parent id or size. */
+    public static final long NO_VALUE = Long.MIN_VALUE;
+
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+
+    private int size;
+    private long[] ids;
+    private long[] parentIds;
+    private long[] sizes;
+    private byte[] types;
+    private long[] names;
+    private String[] classifications;
+    private int[] checksums;
+    private final ByteArena nameArena = new ByteArena();
+    private final StringDictionary checksumDictionary = new StringDictionary();
+
+    public NodeBuffer() {
+        this(1024);
+    }
+
+    public NodeBuffer(int initialCapacity) {
+        int capacity = Math.max(initialCapacity, 16);
+        ids = new long[capacity];
+        parentIds = new long[capacity];
+        sizes = new long[capacity];
+        types = new byte[capacity];
+        names = new long[capacity];
+        classifications = new String[capacity];
+        checksums = new int[capacity];
+    }
+
+    public void add(long id, long parentId, String name, NodeType type, long size,
+            String classification, String checksum) {
+        append(id, parentId, nameArena.add(name), type, size, classification, checksumDictionary.intern(checksum));
+    }
+
+    /**
+     * Adds a row whose name and checksum are the byte ranges {@code [from, to)} of the source,
+     * copied without decoding. An empty checksum range means no checksum.
+     */
+    public void add(long id, long parentId, ByteBuffer source, int nameFrom, int nameTo, NodeType type,
+            long size, String classification, int checksumFrom, int checksumTo) {
+        append(id, parentId, nameArena.add(source, nameFrom, nameTo - nameFrom), type, size, classification,
+                checksumFrom < checksumTo
+                        ? checksumDictionary.intern(source, checksumFrom, checksumTo - checksumFrom)
+                        : StringDictionary.NO_CODE);
+    }
+
+    private void append(long id, long parentId, long name, NodeType type, long size,
+            String classification, int checksum) {
+        if (this.size == ids.length) {
+            grow();
+        }
+        ids[this.size] = id;
+        parentIds[this.size] = parentId;
+        names[this.size] = name;
+        types[this.size] = (byte) type.ordinal();
+        sizes[this.size] = size;
+        classifications[this.size] = classification;
+        checksums[this.size] = checksum;
+        this.size++;
+    }
+
+    private void grow() {
+        int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        parentIds = Arrays.copyOf(parentIds, capacity);
+        sizes = Arrays.copyOf(sizes, capacity);
+        types = Arrays.copyOf(types, capacity);
+        names = Arrays.copyOf(names, capacity);
+        classifications = Arrays.copyOf(classifications, capacity);
+        checksums = Arrays.copyOf(checksums, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long getId(int row) {
+        return ids[row];
+    }
+
+    public long getParentId(int row) {
+        return parentIds[row];
+    }
+
+    public String getName(int row) {
+        return nameArena.getString(names[row]);
+    }
+
+    /**
+     * Arena address of the row's name in {@link #getNameArena()}.
+     */
+    public long getNameAddress(int row) {
+        return names[row];
+    }
+
+    public ByteArena getNameArena() {
+        return nameArena;
+    }
+
+    public NodeType getType(int row) {
+        return NODE_TYPES[types[row]];
+    }
+
+    public long getSize(int row) {
+        return sizes[row];
+    }
+
+    public String getClassification(int row) {
+        return classifications[row];
+    }
+
+    public String getChecksum(int row) {
+        return checksumDictionary.get(checksums[row]);
+    }
+
+    /**
+     * Code of the row's checksum in {@link #getChecksumDictionary()}, or {@link StringDictionary#NO_CODE}.
+     */
+    public int getChecksumCode(int row) {
+        return checksums[row];
+    }
+
+    public StringDictionary getChecksumDictionary() {
+        return checksumDictionary;
+    }
+
+    public Node toNode(int row) {
+        return new Node(
+                ids[row],
+                parentIds[row] != NO_VALUE ? parentIds[row] : null,
+                getName(row),
+                sizes[row] != NO_VALUE ? sizes[row] : null,
+                getType(row),
+                classifications[row],
+                getChecksum(row));
+    }
+
+    public List<Node> toNodes() {
+        List<Node> nodes = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            nodes.add(toNode(row));
+        }
+        return nodes;
+    }
+}
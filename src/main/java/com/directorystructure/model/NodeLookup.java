@@ -0,0 +1,40 @@
+package com.directorystructure.model;
+
+import java.util.BitSet;
+
+/**
+ * The matches of one index lookup, built only on demand. The size comes straight from the
+ * index and single ordinals can be tested against the columns, so a search can probe a small
+ * intermediate result against a broad lookup without ever materializing it.
+ */
+public abstract class NodeLookup {
+
+    /**
+     * Number of matches; exact unless {@link #isExact()} is false, in which case it is an
+     * upper bound.
+     */
+    public abstract long estimate();
+
+    public boolean isExact() {
+        return true;
+    }
+
+    /**
+     * Whether the node with this ordinal matches.
+     */
+    public abstract boolean test(int ordinal);
+
+    /**
+     * Sets the bit of every match in {@code target}, leaving its other bits as they are.
+     */
+    public abstract void addTo(BitSet target);
+
+    /**
+     * Matches as a new bitmap owned by the caller.
+     */
+    public BitSet materialize() {
+        BitSet bits = new BitSet();
+        addTo(bits);
+        return bits;
+    }
+}
@@ -0,0 +1,70 @@
+package com.directorystructure.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.directorystructure.exceptions.ValidationException;
+import com.directorystructure.model.enums.FilterType;
+
+/**
+ * Boolean search expression with explicit grouping, e.g.
+ * {@code and(or(filter(A), filter(B)), not(filter(C)))} for {@code (A OR B) AND NOT C}.
+ */
+public sealed interface SearchExpression {
+
+    record Term(SearchFilter filter) implements SearchExpression {
+        public Term {
+            if (filter == null) {
+                throw new ValidationException("Search filter cannot be null");
+            }
+        }
+    }
+
+    record And(List<SearchExpression> operands) implements SearchExpression {
+        public And {
+            operands = requireOperands(operands);
+        }
+    }
+
+    record Or(List<SearchExpression> operands) implements SearchExpression {
+        public Or {
+            operands = requireOperands(operands);
+        }
+    }
+
+    record Not(SearchExpression operand) implements SearchExpression {
+        public Not {
+            if (operand == null) {
+                throw new ValidationException("Negated expression cannot be null");
+            }
+        }
+    }
+
+    static SearchExpression filter(FilterType type, String value) {
+        return new Term(new SearchFilter(type, value, false));
+    }
+
+    static SearchExpression and(SearchExpression... operands) {
+        return new And(Arrays.asList(operands));
+    }
+
+    static SearchExpression or(SearchExpression... operands) {
+        return new Or(Arrays.asList(operands));
+    }
+
+    static SearchExpression not(SearchExpression operand) {
+        return new Not(operand);
+    }
+
+    private static List<SearchExpression> requireOperands(List<SearchExpression> operands) {
+        if (operands == null || operands.isEmpty()) {
+            throw new ValidationException("Expression needs at least one operand");
+        }
+        for (SearchExpression operand : operands) {
+            if (operand == null) {
+                throw new ValidationException("Expression operands cannot be null");
+            }
+        }
+        return List.copyOf(operands);
+    }
+}
@@ -0,0 +1,59 @@
+package com.directorystructure.model;
+
+import java.util.Arrays;
+
+/**
+ * Per-group running count, sum, min, max and histogram, kept in parallel arrays indexed by a
+ * dense group slot so one pass over the matches needs no per-node allocation.
+ */
+class SizeAccumulator {
+
+    private static final long NO_VALUE = NodeBuffer.NO_VALUE;
+
+    private long[] counts = new long[8];
+    private long[] sums = new long[8];
+    private long[] mins = new long[8];
+    private long[] maxs = new long[8];
+    private long[] histograms = new long[8 * SizeAggregate.HISTOGRAM_BUCKETS];
+    private boolean[] used = new boolean[8];
+
+    void add(int slot, long size) {
+        if (slot >= counts.length) {
+            grow(slot + 1);
+        }
+        if (!used[slot]) {
+            used[slot] = true;
+            mins[slot] = Long.MAX_VALUE;
+            maxs[slot] = Long.MIN_VALUE;
+        }
+        counts[slot]++;
+        if (size != NO_VALUE) {
+            sums[slot] += size;
+            mins[slot] = Math.min(mins[slot], size);
+            maxs[slot] = Math.max(maxs[slot], size);
+            histograms[slot * SizeAggregate.HISTOGRAM_BUCKETS + SizeAggregate.bucketOf(size)]++;
+        }
+    }
+
+    boolean isUsed(int slot) {
+        return slot < used.length && used[slot];
+    }
+
+    SizeAggregate toAggregate(int slot, String group) {
+        boolean sized = mins[slot] <= maxs[slot];
+        int from = slot * SizeAggregate.HISTOGRAM_BUCKETS;
+        return new SizeAggregate(group, counts[slot], sums[slot],
+                sized ? mins[slot] : 0, sized ? maxs[slot] : 0,
+                Arrays.copyOfRange(histograms, from, from + SizeAggregate.HISTOGRAM_BUCKETS));
+    }
+
+    private void grow(int required) {
+        int capacity = Math.max(required, counts.length * 2);
+        counts = Arrays.copyOf(counts, capacity);
+        sums = Arrays.copyOf(sums, capacity);
+        mins = Arrays.copyOf(mins, capacity);
+        maxs = Arrays.copyOf(maxs, capacity);
+        histograms = Arrays.copyOf(histograms, capacity * SizeAggregate.HISTOGRAM_BUCKETS);
+        used = Arrays.copyOf(used, capacity);
+    }
+}
@@ -0,0 +1,52 @@
+package com.directorystructure.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Size statistics of the files in one group. Files without a size are counted but do not
+ * contribute to sum, min, max or the histogram; min and max are 0 when no file has a size.
+ * {@code histogram[0]} counts empty (or negative) files and {@code histogram[i]} files whose size lies in
+ * {@code [2^(i-1), 2^i)}.
+ *
+ * @param group classification name, directory id or depth, depending on the grouping
+ */
+public record SizeAggregate(String group, long count, long sum, long min, long max, long[] histogram) {
+
+    public static final int HISTOGRAM_BUCKETS = 64;
+
+    public SizeAggregate {
+        histogram = histogram.clone();
+    }
+
+    @Override
+    public long[] histogram() {
+        return histogram.clone();
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SizeAggregate that
+                && Objects.equals(group, that.group)
+                && count == that.count
+                && sum == that.sum
+                && min == that.min
+                && max == that.max
+                && Arrays.equals(histogram, that.histogram);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Objects.hash(group, count, sum, min, max) + Arrays.hashCode(histogram);
+    }
+
+    @Override
+    public String toString() {
+        return "SizeAggregate[group=" + group + ", count=" + count + ", sum=" + sum + ", min=" + min
+                + ", max=" + max + ", histogram=" + Arrays.toString(histogram) + "]";
+    }
+
+    public static int bucketOf(long size) {
+        return size <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(size);
+    }
+}
@@ -2,5 +2,14 @@ package com.directorystructure.model.enums;
 
 public enum FilterType {
     CLASSIFICATION,
-    DIRECTORY_NAME
+    DIRECTORY_NAME,
+    // Node name matches: exact, starts with the value, or glob with * and ?
+    NAME,
+    NAME_PREFIX,
+    NAME_GLOB,
+    // Subtree of the node at a full path such as /folder2/folder11
+    PATH,
+    CHECKSUM,
+    // File size within an inclusive range written min..max; either bound may be left out
+    SIZE_RANGE
 }
@@ -0,0 +1,7 @@
+package com.directorystructure.model.enums;
+
+public enum GroupBy {
+    CLASSIFICATION,
+    DIRECTORY,
+    DEPTH
+}
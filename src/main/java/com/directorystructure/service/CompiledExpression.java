@@ -0,0 +1,246 @@
+package com.directorystructure.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+import com.directorystructure.model.DirectoryStructure;
+import com.directorystructure.model.SearchExpression;
+import com.directorystructure.model.SearchFilter;
+
+/**
+ * A search expression bound to a structure. Compilation flattens nested groups of the same
+ * operator, folds double negation and negated filters into the terms themselves, and orders
+ * operands by cardinality. Terms resolve only their index range when compiled. A conjunction
+ * materializes its most selective operand, intersects terms of comparable size into it, and
+ * checks every larger operand per surviving candidate in one pass, so those never build a set.
+ */
+abstract class CompiledExpression {
+
+    // Probe the intermediate result instead of intersecting when the next term is this many times larger
+    private static final long PROBE_RATIO = 64;
+
+    protected final DirectoryStructure structure;
+
+    CompiledExpression(DirectoryStructure structure) {
+        this.structure = structure;
+    }
+
+    static CompiledExpression compile(SearchExpression expression, DirectoryStructure structure) {
+        return compile(expression, false, structure);
+    }
+
+    private static CompiledExpression compile(SearchExpression expression, boolean negate,
+            DirectoryStructure structure) {
+        if (expression instanceof SearchExpression.Term term) {
+            SearchFilter filter = term.filter();
+            if (negate) {
+                filter = new SearchFilter(filter.getType(), filter.getValue(), !filter.isNegated());
+            }
+            return new TermNode(structure, FilterTerm.of(filter, structure));
+        }
+        if (expression instanceof SearchExpression.Not not) {
+            return compile(not.operand(), !negate, structure);
+        }
+        if (negate) {
+            return new NotNode(structure, compile(expression, false, structure));
+        }
+        if (expression instanceof SearchExpression.And and) {
+            List<CompiledExpression> operands = compileOperands(and.operands(), SearchExpression.And.class, structure);
+            return operands.size() == 1 ? operands.get(0) : new AndNode(structure, operands);
+        }
+        SearchExpression.Or or = (SearchExpression.Or) expression;
+        List<CompiledExpression> operands = compileOperands(or.operands(), SearchExpression.Or.class, structure);
+        return operands.size() == 1 ? operands.get(0) : new OrNode(structure, operands);
+    }
+
+    private static List<CompiledExpression> compileOperands(List<SearchExpression> operands,
+            Class<? extends SearchExpression> group, DirectoryStructure structure) {
+        List<CompiledExpression> compiled = new ArrayList<>(operands.size());
+        for (SearchExpression operand : operands) {
+            if (group.isInstance(operand)) {
+                List<SearchExpression> nested = operand instanceof SearchExpression.And and
+                        ? and.operands() : ((SearchExpression.Or) operand).operands();
+                compiled.addAll(compileOperands(nested, group, structure));
+            } else {
+                compiled.add(compile(operand, false, structure));
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Upper bound on the number of matching nodes; exact for single terms other than name globs.
+     */
+    abstract long estimate();
+
+    /**
+     * Whether the node with this ordinal matches.
+     */
+    abstract boolean matches(int ordinal);
+
+    /**
+     * Matches as a bitmap owned by the caller.
+     */
+    abstract BitSet evaluate();
+
+    private static final class TermNode extends CompiledExpression {
+        private final FilterTerm term;
+
+        TermNode(DirectoryStructure structure, FilterTerm term) {
+            super(structure);
+            this.term = term;
+        }
+
+        @Override
+        long estimate() {
+            return term.estimate();
+        }
+
+        @Override
+        boolean matches(int ordinal) {
+            return term.matches(ordinal);
+        }
+
+        @Override
+        BitSet evaluate() {
+            return term.materialize();
+        }
+    }
+
+    private static final class NotNode extends CompiledExpression {
+        private final CompiledExpression operand;
+
+        NotNode(DirectoryStructure structure, CompiledExpression operand) {
+            super(structure);
+            this.operand = operand;
+        }
+
+        @Override
+        long estimate() {
+            return structure.getNodeCount();
+        }
+
+        @Override
+        boolean matches(int ordinal) {
+            return !operand.matches(ordinal);
+        }
+
+        @Override
+        BitSet evaluate() {
+            BitSet result = (BitSet) structure.getAllNodeBits().clone();
+            result.andNot(operand.evaluate());
+            return result;
+        }
+    }
+
+    private static final class AndNode extends CompiledExpression {
+        private final CompiledExpression[] operands;
+
+        AndNode(DirectoryStructure structure, List<CompiledExpression> operands) {
+            super(structure);
+            this.operands = operands.toArray(new CompiledExpression[0]);
+            Arrays.sort(this.operands, Comparator.comparingLong(CompiledExpression::estimate));
+        }
+
+        @Override
+        long estimate() {
+            return operands[0].estimate();
+        }
+
+        @Override
+        boolean matches(int ordinal) {
+            for (CompiledExpression operand : operands) {
+                if (!operand.matches(ordinal)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Starts from the most selective operand, intersects simple terms word by word while
+         * that is cheaper than probing, and leaves everything else to one pass over the survivors.
+         */
+        @Override
+        BitSet evaluate() {
+            BitSet result = operands[0].evaluate();
+            List<CompiledExpression> residual = new ArrayList<>(operands.length - 1);
+            for (int i = 1; i < operands.length; i++) {
+                long resultSize = result.cardinality();
+                if (resultSize == 0) {
+                    return result;
+                }
+                CompiledExpression operand = operands[i];
+                if (operand instanceof TermNode term && resultSize * PROBE_RATIO >= term.estimate()) {
+                    term.term.intersectInto(result);
+                } else {
+                    residual.add(operand);
+                }
+            }
+            if (!residual.isEmpty()) {
+                CompiledExpression[] checks = residual.toArray(new CompiledExpression[0]);
+                for (int ordinal = result.nextSetBit(0); ordinal >= 0; ordinal = result.nextSetBit(ordinal + 1)) {
+                    for (CompiledExpression check : checks) {
+                        if (!check.matches(ordinal)) {
+                            result.clear(ordinal);
+                            break;
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class OrNode extends CompiledExpression {
+        private final CompiledExpression[] operands;
+
+        OrNode(DirectoryStructure structure, List<CompiledExpression> operands) {
+            super(structure);
+            this.operands = operands.toArray(new CompiledExpression[0]);
+            Arrays.sort(this.operands, Comparator.comparingLong(CompiledExpression::estimate).reversed());
+        }
+
+        @Override
+        long estimate() {
+            long total = 0;
+            for (CompiledExpression operand : operands) {
+                total += operand.estimate();
+            }
+            return Math.min(total, structure.getNodeCount());
+        }
+
+        @Override
+        boolean matches(int ordinal) {
+            for (CompiledExpression operand : operands) {
+                if (operand.matches(ordinal)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Unions from the largest operand down and stops once every node is included. Lookup terms
+     * add their matches straight into the result rather than building a bitmap of their own.
+         */
+        @Override
+        BitSet evaluate() {
+            BitSet result = operands[0].evaluate();
+            for (int i = 1; i < operands.length; i++) {
+                if (result.cardinality() >= structure.getNodeCount()) {
+                    break;
+                }
+                if (operands[i] instanceof TermNode term) {
+                    term.term.unionInto(result);
+                } else {
+                    result.or(operands[i].evaluate());
+                }
+            }
+            return result;
+        }
+    }
+}
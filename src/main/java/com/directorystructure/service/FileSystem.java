@@ -1,51 +1,307 @@
 package com.directorystructure.service;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
+import com.directorystructure.exceptions.ValidationException;
+import com.directorystructure.metrics.MBeans;
+import com.directorystructure.metrics.ParserMetrics;
+import com.directorystructure.metrics.SearchMetrics;
+import com.directorystructure.metrics.StructureMetrics;
 import com.directorystructure.model.DirectoryStructure;
+import com.directorystructure.model.DuplicateGroup;
 import com.directorystructure.model.Node;
+import com.directorystructure.model.SizeAggregate;
+import com.directorystructure.model.enums.GroupBy;
 import com.directorystructure.util.CsvParser;
 import com.directorystructure.util.ResultFormatter;
+import com.google.common.cache.CacheStats;
 
+/**
+ * Serves queries from an immutable, versioned snapshot of the directory structure. Loads and
+ * updates build the next version off to the side and publish it with a single volatile write,
+ * so readers never block and never observe a half-built structure. Writers are serialized.
+ */
 public class FileSystem {
-    private final DirectoryStructure repository;
-    private final SearchEngine searchEngine;
+
+    private record Snapshot(DirectoryStructure repository, SearchEngine searchEngine, long version) {
+    }
+
+    private static final long DEFAULT_CACHE_SIZE = 1024;
+    private static final long DEFAULT_CACHE_CHARS = 64L << 20;
+
+    private final Object writeLock = new Object();
+    private final QueryCache queryCache;
+    private final SearchMetrics searchMetrics = new SearchMetrics();
+    private volatile Snapshot current;
+    private String mbeanName;
 
     public FileSystem() {
-        this.repository = new DirectoryStructure();
-        this.searchEngine = new SearchEngine(repository);
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param maximumCacheSize maximum number of cached search results; 0 disables caching
+     */
+    public FileSystem(long maximumCacheSize) {
+        this(maximumCacheSize, DEFAULT_CACHE_CHARS);
+    }
+
+    /**
+     * @param maximumCacheSize  maximum number of cached search results; 0 disables caching
+     * @param maximumCacheChars maximum combined length of the cached results, so a few broad
+     *                          queries over a large tree cannot pin unbounded memory
+     */
+    public FileSystem(long maximumCacheSize, long maximumCacheChars) {
+        if (maximumCacheSize < 0) {
+            throw new ValidationException("Cache size cannot be negative");
+        }
+        if (maximumCacheChars < 0) {
+            throw new ValidationException("Cache length limit cannot be negative");
+        }
+        this.queryCache = new QueryCache(maximumCacheSize, maximumCacheChars);
+        DirectoryStructure empty = new DirectoryStructure();
+        empty.freeze();
+        this.current = new Snapshot(empty, new SearchEngine(empty, searchMetrics), 0);
     }
 
     public void loadFromCsv(String resourceName) {
         List<Node> nodes = CsvParser.parse(resourceName);
-        for (Node node : nodes) {
-            repository.addNode(node);
-        }
+        DirectoryStructure repository = new DirectoryStructure();
+        repository.bulkLoad(nodes);
+        repository.computeAllSizes();
+        publish(repository);
+    }
+
+    public void loadFromCsv(Path csvFile) {
+        DirectoryStructure repository = new DirectoryStructure();
+        repository.bulkLoad(CsvParser.parse(csvFile));
         repository.computeAllSizes();
+        publish(repository);
+    }
+
+    /**
+     * Parses the file in newline-aligned chunks and builds the indexes on the common fork-join pool.
+     */
+    public void loadFromCsvParallel(Path csvFile) {
+        loadFromCsvParallel(csvFile, ForkJoinPool.commonPool());
+    }
+
+    public void loadFromCsvParallel(Path csvFile, ForkJoinPool pool) {
+        DirectoryStructure repository = new DirectoryStructure();
+        repository.bulkLoad(CsvParser.parseParallel(csvFile, pool), pool);
+        repository.computeAllSizes();
+        publish(repository);
+    }
+
+    /**
+     * Publishes a structure saved with {@link #saveSnapshot(Path)}. Nothing is parsed or
+     * recomputed, so startup cost is roughly that of copying the file from the page cache.
+     */
+    public void openSnapshot(Path snapshotFile) {
+        publish(DirectoryStructure.open(snapshotFile));
+    }
+
+    /**
+     * Saves the current version, including its computed sizes and indexes, as a binary snapshot.
+     */
+    public void saveSnapshot(Path snapshotFile) throws IOException {
+        current.repository().save(snapshotFile);
+    }
+
+    /**
+     * Applies the mutations to a copy of the current version and publishes the result. Batch
+     * related changes into one call, since each call copies the structure once. The incremental
+     * mutations keep the copied sizes current along the affected ancestor chains; rows appended
+     * with {@code addNode} or {@code bulkLoad} cost one full size recompute when publishing.
+     */
+    public void update(Consumer<DirectoryStructure> mutations) {
+        if (mutations == null) {
+            throw new ValidationException("Mutations cannot be null");
+        }
+        synchronized (writeLock) {
+            DirectoryStructure next = current.repository().copy();
+            mutations.accept(next);
+            publish(next);
+        }
+    }
+
+    private void publish(DirectoryStructure repository) {
+        repository.freeze();
+        synchronized (writeLock) {
+            current = new Snapshot(repository, new SearchEngine(repository, searchMetrics), current.version() + 1);
+        }
+        queryCache.invalidateAll();
+    }
+
+    /**
+     * Version of the currently published snapshot; increases with every load or update.
+     */
+    public long getVersion() {
+        return current.version();
+    }
+
+    /**
+     * The currently published, read-only structure.
+     */
+    public DirectoryStructure getDirectoryStructure() {
+        return current.repository();
+    }
+
+    /**
+     * Hit, miss and eviction counts of the search result cache.
+     */
+    public CacheStats getCacheStats() {
+        return queryCache.stats();
+    }
+
+    /**
+     * Search latency, result size and negation counters of this file system, across versions.
+     */
+    public SearchMetrics getSearchMetrics() {
+        return searchMetrics;
+    }
+
+    /**
+     * Exposes the search and structure metrics of this file system as platform MBeans named
+     * {@code com.directorystructure:type=Search,name=<name>} and {@code type=Structure,name=<name>},
+     * together with the process-wide {@code type=CsvParser} bean. Beans already registered under
+     * those names are replaced.
+     */
+    public void registerMBeans(String name) {
+        if (name == null || name.isBlank()) {
+            throw new ValidationException("MBean name cannot be null or empty");
+        }
+        unregisterMBeans();
+        MBeans.register(ParserMetrics.global(), MBeans.name("CsvParser", null));
+        MBeans.register(searchMetrics, MBeans.name("Search", name));
+        MBeans.register(new StructureMetrics(this::getDirectoryStructure, this::getVersion),
+                MBeans.name("Structure", name));
+        mbeanName = name;
+    }
+
+    /**
+     * Removes the beans added by {@link #registerMBeans(String)}; the shared CsvParser bean stays.
+     */
+    public void unregisterMBeans() {
+        if (mbeanName != null) {
+            MBeans.unregister(MBeans.name("Search", mbeanName));
+            MBeans.unregister(MBeans.name("Structure", mbeanName));
+            mbeanName = null;
+        }
     }
 
     public String buildTree() {
-        return ResultFormatter.formatTree(repository);
+        return ResultFormatter.formatTree(current.repository());
+    }
+
+    /**
+     * Streams the tree of the current version to the writer instead of building a String.
+     */
+    public void writeTree(Writer writer) throws IOException {
+        ResultFormatter.formatTree(current.repository(), writer);
+    }
+
+    /**
+     * Streams the full path of every node of the current version, one per line in tree order.
+     */
+    public void writePaths(Writer writer) throws IOException {
+        ResultFormatter.formatPaths(current.repository(), writer);
+    }
+
+    /**
+     * Node at a full path such as {@code /folder2/folder11/folder3}, or null if there is none.
+     */
+    public Node findByPath(String path) {
+        DirectoryStructure repository = current.repository();
+        Long id = repository.resolvePath(path);
+        return id != null ? repository.getNode(id) : null;
+    }
+
+    /**
+     * Full paths of the matching files in name order, one per line.
+     */
+    public String searchPaths(SearchCriteria criteria) {
+        if (criteria == null || criteria.isEmpty()) {
+            return "";
+        }
+        Snapshot snapshot = current;
+        return ResultFormatter.formatSearchResultPaths(snapshot.repository(), snapshot.searchEngine().open(criteria));
     }
 
     public String search(SearchCriteria criteria) {
-        if (criteria == null || criteria.getFilters().isEmpty()) {
+        if (criteria == null || criteria.isEmpty()) {
             return "";
         }
 
-        Set<Node> results = searchEngine.execute(criteria);
+        Snapshot snapshot = current;
+        return queryCache.get(snapshot.version(), criteria, () -> search(snapshot, criteria));
+    }
 
+    private String search(Snapshot snapshot, SearchCriteria criteria) {
         if (criteria.shouldComputeSize()) {
-            long totalSize = results.stream()
-                    .filter(node -> !node.isDirectory())
-                    .filter(node -> node.getSize() != null)
-                    .mapToLong(Node::getSize)
-                    .sum();
-            return String.valueOf(totalSize);
-
+            return String.valueOf(snapshot.searchEngine().sumFileSizes(criteria));
         }
+        return ResultFormatter.formatSearchResults(snapshot.searchEngine().open(criteria));
+    }
+
+    /**
+     * Count, sum, min, max and size histogram of the matching files per classification,
+     * directory or depth, computed in one pass. Empty criteria cover every file.
+     */
+    public List<SizeAggregate> aggregate(SearchCriteria criteria, GroupBy groupBy) {
+        return current.searchEngine().aggregate(criteria, groupBy);
+    }
+
+    /**
+     * Up to {@code limit} groups of files with identical checksums, most wasted bytes first.
+     */
+    public List<DuplicateGroup> findDuplicates(int limit) {
+        return current.repository().getDuplicateGroups(limit);
+    }
+
+    /**
+     * Up to {@code limit} largest files under the directory at {@code path}, or under the root
+     * when the path is null; largest first.
+     */
+    public List<Node> findLargestFiles(String path, int limit) {
+        DirectoryStructure repository = current.repository();
+        return repository.getLargestFiles(path != null ? repository.resolvePath(path) : repository.getRootId(), limit);
+    }
+
+    /**
+     * Up to {@code limit} largest directories under the directory at {@code path}, or under the
+     * root when the path is null; largest first.
+     */
+    public List<Node> findLargestDirectories(String path, int limit) {
+        DirectoryStructure repository = current.repository();
+        return repository.getLargestDirectories(
+                path != null ? repository.resolvePath(path) : repository.getRootId(), limit);
+    }
+
+    /**
+     * Cursor over the matching files of the current version in name order. It keeps reading
+     * that version even if a newer one is published meanwhile.
+     */
+    public ResultCursor openCursor(SearchCriteria criteria) {
+        return current.searchEngine().open(criteria);
+    }
+
+    /**
+     * Returns up to {@code limit} matching files in name order after skipping {@code offset}.
+     */
+    public ResultPage searchPage(SearchCriteria criteria, long offset, int limit) {
+        return openCursor(criteria).skip(offset).nextPage(limit);
+    }
 
-        return ResultFormatter.formatSearchResults(results);
+    /**
+     * Returns the page that follows {@code after}, the cursor of a previous page.
+     */
+    public ResultPage searchPage(SearchCriteria criteria, ResultPage.Cursor after, int limit) {
+        return openCursor(criteria).seekAfter(after).nextPage(limit);
     }
-}
\ No newline at end of file
+}
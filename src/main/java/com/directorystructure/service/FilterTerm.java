@@ -0,0 +1,245 @@
+package com.directorystructure.service;
+
+import java.util.BitSet;
+import java.util.List;
+
+import com.directorystructure.exceptions.ValidationException;
+import com.directorystructure.model.DirectoryStructure;
+import com.directorystructure.model.NodeLookup;
+import com.directorystructure.model.SearchFilter;
+
+/**
+ * A single filter bound to a structure. Besides materializing its matches as a bitmap, a term
+ * can report its cardinality and test one ordinal at a time, which lets the planner probe a
+ * small intermediate result instead of building a large set.
+ */
+abstract class FilterTerm {
+
+    protected final DirectoryStructure structure;
+    protected final boolean negate;
+
+    FilterTerm(DirectoryStructure structure, boolean negate) {
+        this.structure = structure;
+        this.negate = negate;
+    }
+
+    static FilterTerm of(SearchFilter filter, DirectoryStructure structure) {
+        return switch (filter.getType()) {
+            case CLASSIFICATION -> new BitmapTerm(structure, structure.getClassificationBits(filter.getValue()),
+                    structure.getClassificationCount(filter.getValue()), filter.isNegated());
+            case DIRECTORY_NAME -> new SubtreeTerm(structure, structure.getDirectoryIdsByName(filter.getValue()),
+                    filter.isNegated());
+            case NAME -> new LookupTerm(structure, structure.lookupByName(filter.getValue()), filter.isNegated());
+            case NAME_PREFIX -> new LookupTerm(structure, structure.lookupByNamePrefix(filter.getValue()),
+                    filter.isNegated());
+            case NAME_GLOB -> new LookupTerm(structure, structure.lookupByNameGlob(filter.getValue()), filter.isNegated());
+            case CHECKSUM -> new LookupTerm(structure, structure.lookupByChecksum(filter.getValue()), filter.isNegated());
+            case SIZE_RANGE -> sizeRange(structure, filter.getValue(), filter.isNegated());
+            case PATH -> {
+                Long node = structure.resolvePath(filter.getValue());
+                yield new SubtreeTerm(structure, node != null ? List.of(node) : List.of(), filter.isNegated());
+            }
+        };
+    }
+
+    private static FilterTerm sizeRange(DirectoryStructure structure, String range, boolean negate) {
+        int separator = range.indexOf("..");
+        if (separator < 0) {
+            throw new ValidationException("Size range must look like min..max: " + range);
+        }
+        try {
+            String min = range.substring(0, separator).trim();
+            String max = range.substring(separator + 2).trim();
+            return new LookupTerm(structure, structure.lookupFilesBySizeRange(
+                    min.isEmpty() ? Long.MIN_VALUE : Long.parseLong(min),
+                    max.isEmpty() ? Long.MAX_VALUE : Long.parseLong(max)), negate);
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Size range must look like min..max: " + range);
+        }
+    }
+
+    /**
+     * Number of matching nodes; exact except for name globs, where it is an upper bound.
+     */
+    abstract long estimate();
+
+    /**
+     * Whether the node with this ordinal matches.
+     */
+    abstract boolean matches(int ordinal);
+
+    /**
+     * Matches as a bitmap owned by the caller.
+     */
+    abstract BitSet materialize();
+
+    /**
+     * In-place intersection; the default scans the set bits and probes each one.
+     */
+    void intersectInto(BitSet bits) {
+        probeInto(bits);
+    }
+
+    /**
+     * In-place union.
+     */
+    void unionInto(BitSet bits) {
+        bits.or(materialize());
+    }
+
+    final void probeInto(BitSet bits) {
+        for (int ordinal = bits.nextSetBit(0); ordinal >= 0; ordinal = bits.nextSetBit(ordinal + 1)) {
+            if (!matches(ordinal)) {
+                bits.clear(ordinal);
+            }
+        }
+    }
+
+    protected BitSet complement(BitSet bits) {
+        BitSet result = (BitSet) structure.getAllNodeBits().clone();
+        result.andNot(bits);
+        return result;
+    }
+
+    /**
+     * Matches read from a shared classification bitmap, which is never modified.
+     */
+    private static final class BitmapTerm extends FilterTerm {
+        private final BitSet indexed;
+        private final long matching;
+
+        BitmapTerm(DirectoryStructure structure, BitSet indexed, long matching, boolean negate) {
+            super(structure, negate);
+            this.indexed = indexed;
+            this.matching = matching;
+        }
+
+        @Override
+        long estimate() {
+            return negate ? structure.getNodeCount() - matching : matching;
+        }
+
+        @Override
+        boolean matches(int ordinal) {
+            return indexed.get(ordinal) != negate;
+        }
+
+        @Override
+        BitSet materialize() {
+            return negate ? complement(indexed) : (BitSet) indexed.clone();
+        }
+
+        @Override
+        void intersectInto(BitSet bits) {
+            if (negate) {
+                bits.andNot(indexed);
+            } else {
+                bits.and(indexed);
+            }
+        }
+
+        @Override
+        void unionInto(BitSet bits) {
+            if (negate) {
+                bits.or(complement(indexed));
+            } else {
+                bits.or(indexed);
+            }
+        }
+    }
+
+    /**
+     * Matches of a name, checksum or size lookup. Only the index range is resolved at compile
+     * time; a term that is probed never builds its bitmap, and a union adds its matches straight
+     * into the result.
+     */
+    private static final class LookupTerm extends FilterTerm {
+        private final NodeLookup lookup;
+
+        LookupTerm(DirectoryStructure structure, NodeLookup lookup, boolean negate) {
+            super(structure, negate);
+            this.lookup = lookup;
+        }
+
+        @Override
+        long estimate() {
+            if (!negate) {
+                return lookup.estimate();
+            }
+            return structure.getNodeCount() - (lookup.isExact() ? lookup.estimate() : 0);
+        }
+
+        @Override
+        boolean matches(int ordinal) {
+            return lookup.test(ordinal) != negate;
+        }
+
+        @Override
+        BitSet materialize() {
+            return negate ? complement(lookup.materialize()) : lookup.materialize();
+        }
+
+        @Override
+        void intersectInto(BitSet bits) {
+            if (negate) {
+                bits.andNot(lookup.materialize());
+            } else {
+                bits.and(lookup.materialize());
+            }
+        }
+
+        @Override
+        void unionInto(BitSet bits) {
+            if (negate) {
+                bits.or(complement(lookup.materialize()));
+            } else {
+                lookup.addTo(bits);
+            }
+        }
+    }
+
+    /**
+     * Subtrees of the given nodes, such as every directory with a name. A single root is probed
+     * through its pre-order interval; several are unioned into one bitmap up front.
+     */
+    private static final class SubtreeTerm extends FilterTerm {
+        private final Long directoryId;
+        private final int rootOrdinal;
+        private final BitSet subtrees;
+
+        SubtreeTerm(DirectoryStructure structure, List<Long> directories, boolean negate) {
+            super(structure, negate);
+            if (directories.size() > 1) {
+                this.directoryId = null;
+                this.subtrees = new BitSet();
+                for (Long directory : directories) {
+                    subtrees.or(structure.getSubtreeBits(directory));
+                }
+            } else {
+                this.directoryId = directories.isEmpty() ? null : directories.get(0);
+                this.subtrees = null;
+            }
+            this.rootOrdinal = structure.getOrdinal(directoryId);
+        }
+
+        @Override
+        long estimate() {
+            long matching = subtrees != null ? subtrees.cardinality() : structure.getSubtreeNodeCount(directoryId);
+            return negate ? structure.getNodeCount() - matching : matching;
+        }
+
+        @Override
+        boolean matches(int ordinal) {
+            boolean inside = subtrees != null
+                    ? subtrees.get(ordinal)
+                    : rootOrdinal >= 0 && structure.isInSubtree(ordinal, rootOrdinal);
+            return inside != negate;
+        }
+
+        @Override
+        BitSet materialize() {
+            BitSet descendants = subtrees != null ? (BitSet) subtrees.clone() : structure.getSubtreeBits(directoryId);
+            return negate ? complement(descendants) : descendants;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.directorystructure.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import com.directorystructure.model.SearchExpression;
+import com.directorystructure.model.SearchFilter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Bounded cache of formatted search results, keyed by snapshot version and a canonical form of
+ * the criteria. Entries from older versions can never be hit and are dropped on publish.
+ * <p>
+ * Both the number of entries and the total length of the cached results are bounded. Each
+ * entry weighs its result length, but at least an equal share of the length limit, so the
+ * limit also caps the entry count.
+ */
+class QueryCache {
+
+    private record Key(long version, String criteria) {
+    }
+
+    private final Cache<Key, String> cache;
+
+    QueryCache(long maximumSize, long maximumChars) {
+        long share = maximumSize > 0 ? Math.max(maximumChars / maximumSize, 1) : 1;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(maximumSize > 0 ? maximumChars : 0)
+                .weigher((Key key, String result) -> (int) Math.min(Math.max(result.length(), share), Integer.MAX_VALUE))
+                .recordStats()
+                .build();
+    }
+
+    String get(long version, SearchCriteria criteria, Supplier<String> loader) {
+        Key key = new Key(version, canonicalize(criteria));
+        String cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        String result = loader.get();
+        cache.put(key, result);
+        return result;
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    CacheStats stats() {
+        return cache.stats();
+    }
+
+    long size() {
+        return cache.size();
+    }
+
+    /**
+     * Renders the criteria so that equivalent queries share a key: nested groups of the same
+     * operator are flattened and their operands, which commute, are sorted.
+     */
+    static String canonicalize(SearchCriteria criteria) {
+        StringBuilder key = new StringBuilder(criteria.shouldComputeSize() ? "size" : "list");
+        return key.append('\u0000').append(canonicalize(criteria.toExpression())).toString();
+    }
+
+    private static String canonicalize(SearchExpression expression) {
+        if (expression instanceof SearchExpression.Term term) {
+            SearchFilter filter = term.filter();
+            return filter.getType() + (filter.isNegated() ? "!=" : "=") + filter.getValue();
+        }
+        if (expression instanceof SearchExpression.Not not) {
+            return "NOT(" + canonicalize(not.operand()) + ")";
+        }
+        boolean and = expression instanceof SearchExpression.And;
+        List<String> operands = new ArrayList<>();
+        collectOperands(expression, and ? SearchExpression.And.class : SearchExpression.Or.class, operands);
+        if (operands.size() == 1) {
+            return operands.get(0);
+        }
+        Collections.sort(operands);
+        return (and ? "AND(" : "OR(") + String.join("\u0000", operands) + ")";
+    }
+
+    private static void collectOperands(SearchExpression expression, Class<? extends SearchExpression> group,
+            List<String> operands) {
+        List<SearchExpression> nested = expression instanceof SearchExpression.And and
+                ? and.operands() : ((SearchExpression.Or) expression).operands();
+        for (SearchExpression operand : nested) {
+            if (group.isInstance(operand)) {
+                collectOperands(operand, group, operands);
+            } else {
+                operands.add(canonicalize(operand));
+            }
+        }
+    }
+}
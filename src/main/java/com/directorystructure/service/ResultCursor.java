@@ -0,0 +1,137 @@
+package com.directorystructure.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.directorystructure.exceptions.ValidationException;
+import com.directorystructure.model.DirectoryStructure;
+import com.directorystructure.model.Node;
+
+/**
+ * Iterates the files of a search result in name order, materializing one {@link Node} at a time.
+ * Dense results walk the structure's precomputed name order and test each file against the
+ * match bitmap, so the first page costs about {@code pageSize * files / matches} probes. Sparse
+ * results sort just their own name ranks instead of scanning mostly non-matching files.
+ */
+public class ResultCursor implements Iterator<Node> {
+
+    // Walk the name order instead of sorting when at least one in this many files matches
+    private static final long SCAN_RATIO = 64;
+
+    private final DirectoryStructure structure;
+    private final BitSet matches;
+    private final int[] sortedRanks;
+    private final int end;
+    private int position;
+    private int nextOrdinal = -1;
+
+    ResultCursor(DirectoryStructure structure, BitSet matches) {
+        this.structure = structure;
+        this.matches = matches;
+        int fileCount = structure.getFileCount();
+        if ((long) matches.cardinality() * SCAN_RATIO >= fileCount) {
+            this.sortedRanks = null;
+            this.end = fileCount;
+        } else {
+            int[] ranks = new int[matches.cardinality()];
+            int size = 0;
+            for (int ordinal = matches.nextSetBit(0); ordinal >= 0; ordinal = matches.nextSetBit(ordinal + 1)) {
+                int rank = structure.getFileRank(ordinal);
+                if (rank >= 0) {
+                    ranks[size++] = rank;
+                }
+            }
+            Arrays.sort(ranks, 0, size);
+            this.sortedRanks = ranks;
+            this.end = size;
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (nextOrdinal >= 0) {
+            return true;
+        }
+        while (position < end) {
+            int ordinal = sortedRanks != null
+                    ? structure.getFileOrdinalByRank(sortedRanks[position++])
+                    : structure.getFileOrdinalByRank(position++);
+            if (sortedRanks != null || matches.get(ordinal)) {
+                nextOrdinal = ordinal;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Node next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Node node = structure.getNodeAt(nextOrdinal);
+        nextOrdinal = -1;
+        return node;
+    }
+
+    /**
+     * Skips up to {@code count} results without materializing them.
+     */
+    public ResultCursor skip(long count) {
+        if (count < 0) {
+            throw new ValidationException("Offset cannot be negative");
+        }
+        if (count > 0 && nextOrdinal >= 0) {
+            nextOrdinal = -1;
+            count--;
+        }
+        if (sortedRanks != null) {
+            position = (int) Math.min(end, position + count);
+            return this;
+        }
+        for (; count > 0 && hasNext(); count--) {
+            nextOrdinal = -1;
+        }
+        return this;
+    }
+
+    /**
+     * Moves the cursor to the first result that sorts after the given file name and id.
+     */
+    public ResultCursor seekAfter(ResultPage.Cursor after) {
+        if (after == null) {
+            throw new ValidationException("Cursor cannot be null");
+        }
+        int rank = structure.getFileRankAfter(after.name(), after.id());
+        nextOrdinal = -1;
+        if (sortedRanks == null) {
+            position = rank;
+        } else {
+            int index = Arrays.binarySearch(sortedRanks, 0, end, rank);
+            position = index >= 0 ? index : -index - 1;
+        }
+        return this;
+    }
+
+    /**
+     * Returns up to {@code limit} results and a cursor to resume after the last one.
+     */
+    public ResultPage nextPage(int limit) {
+        if (limit <= 0) {
+            throw new ValidationException("Page limit must be positive");
+        }
+        List<Node> nodes = new ArrayList<>(Math.min(limit, 1024));
+        while (nodes.size() < limit && hasNext()) {
+            nodes.add(next());
+        }
+        Node last = nodes.isEmpty() ? null : nodes.get(nodes.size() - 1);
+        if (last == null || !hasNext()) {
+            return new ResultPage(nodes, null);
+        }
+        return new ResultPage(nodes, new ResultPage.Cursor(last.getName(), last.getId()));
+    }
+}
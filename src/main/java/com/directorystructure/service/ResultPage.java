@@ -0,0 +1,22 @@
+package com.directorystructure.service;
+
+import java.util.List;
+
+import com.directorystructure.model.Node;
+
+/**
+ * One page of files in name order. {@code next} is null once the result is exhausted.
+ */
+public record ResultPage(List<Node> nodes, Cursor next) {
+
+    /**
+     * Resumes after the file with this name and id. It does not depend on a snapshot version,
+     * so paging can continue across reloads and updates.
+     */
+    public record Cursor(String name, long id) {
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
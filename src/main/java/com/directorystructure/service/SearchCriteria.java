@@ -4,15 +4,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.directorystructure.exceptions.ValidationException;
+import com.directorystructure.model.SearchExpression;
 import com.directorystructure.model.SearchFilter;
 import com.directorystructure.model.enums.FilterType;
 import com.directorystructure.model.enums.LogicalOperator;
 
 public class SearchCriteria {
+    private final List<SearchExpression> operands = new ArrayList<>();
     private final List<SearchFilter> filters = new ArrayList<>();
     private final List<LogicalOperator> operators = new ArrayList<>();
     private boolean computeSize = false;
-    
+
     public SearchCriteria where(FilterType type, String value, boolean negate) {
         if (type == null) {
             throw new ValidationException("FilterType cannot be null");
@@ -20,38 +22,98 @@ public class SearchCriteria {
         if (value == null) {
             throw new ValidationException("Search value cannot be null");
         }
-        filters.add(new SearchFilter(type, value, negate));
+        SearchFilter filter = new SearchFilter(type, value, negate);
+        filters.add(filter);
+        operands.add(new SearchExpression.Term(filter));
         return this;
     }
-    
+
     public SearchCriteria where(FilterType type, String value) {
         return where(type, value, false);
     }
-    
+
+    /**
+     * Adds a grouped sub-expression as the next operand of the left-to-right chain.
+     */
+    public SearchCriteria where(SearchExpression expression) {
+        if (expression == null) {
+            throw new ValidationException("Search expression cannot be null");
+        }
+        operands.add(expression);
+        return this;
+    }
+
     public SearchCriteria and(FilterType type, String value, boolean negate) {
         operators.add(LogicalOperator.AND);
         return where(type, value, negate);
     }
-    
+
     public SearchCriteria and(FilterType type, String value) {
         return and(type, value, false);
     }
-    
+
+    public SearchCriteria and(SearchExpression expression) {
+        operators.add(LogicalOperator.AND);
+        return where(expression);
+    }
+
     public SearchCriteria or(FilterType type, String value, boolean negate) {
         operators.add(LogicalOperator.OR);
         return where(type, value, negate);
     }
-    
+
     public SearchCriteria or(FilterType type, String value) {
         return or(type, value, false);
     }
 
+    public SearchCriteria or(SearchExpression expression) {
+        operators.add(LogicalOperator.OR);
+        return where(expression);
+    }
+
     public SearchCriteria size() {
         this.computeSize = true;
         return this;
     }
-    
+
+    /**
+     * Folds the chain left to right into an expression tree, flattening runs of the same
+     * operator into one n-ary node: {@code A OR B AND C} becomes {@code AND(OR(A, B), C)}.
+     */
+    public SearchExpression toExpression() {
+        if (operands.isEmpty()) {
+            throw new ValidationException("Search criteria has no filters");
+        }
+        if (operators.size() != operands.size() - 1) {
+            throw new ValidationException("Each operand after the first needs a logical operator");
+        }
+        List<SearchExpression> run = new ArrayList<>();
+        run.add(operands.get(0));
+        LogicalOperator runOperator = null;
+        for (int i = 1; i < operands.size(); i++) {
+            LogicalOperator operator = operators.get(i - 1);
+            if (runOperator != null && operator != runOperator) {
+                SearchExpression folded = combine(runOperator, run);
+                run = new ArrayList<>();
+                run.add(folded);
+            }
+            runOperator = operator;
+            run.add(operands.get(i));
+        }
+        return runOperator == null ? run.get(0) : combine(runOperator, run);
+    }
+
+    private static SearchExpression combine(LogicalOperator operator, List<SearchExpression> run) {
+        return operator == LogicalOperator.AND ? new SearchExpression.And(run) : new SearchExpression.Or(run);
+    }
+
+    public boolean isEmpty() { return operands.isEmpty(); }
+
+    /**
+     * Simple filters added through the flat builder methods; grouped operands are only visible
+     * through {@link #toExpression()}.
+     */
     public List<SearchFilter> getFilters() { return filters; }
     public List<LogicalOperator> getOperators() { return operators; }
     public boolean shouldComputeSize() { return computeSize; }
-}
\ No newline at end of file
+}
@@ -1,91 +1,155 @@
 package com.directorystructure.service;
 
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 import com.directorystructure.exceptions.ValidationException;
+import com.directorystructure.metrics.SearchEvent;
+import com.directorystructure.metrics.SearchMetrics;
 import com.directorystructure.model.DirectoryStructure;
 import com.directorystructure.model.Node;
+import com.directorystructure.model.SearchExpression;
 import com.directorystructure.model.SearchFilter;
-import com.directorystructure.model.enums.LogicalOperator;
+import com.directorystructure.model.SizeAggregate;
+import com.directorystructure.model.enums.FilterType;
+import com.directorystructure.model.enums.GroupBy;
 
 public class SearchEngine {
 
     private final DirectoryStructure directoryModel;
+    private final SearchMetrics metrics;
 
     public SearchEngine(DirectoryStructure directoryModel) {
+        this(directoryModel, new SearchMetrics());
+    }
+
+    /**
+     * @param metrics receives the latency and result size of every evaluated query; engines of
+     *                successive versions can share one instance
+     */
+    public SearchEngine(DirectoryStructure directoryModel, SearchMetrics metrics) {
         if (directoryModel == null) {
             throw new ValidationException("DirectoryStructure directoryModel cannot be null");
         }
+        if (metrics == null) {
+            throw new ValidationException("Search metrics cannot be null");
+        }
         this.directoryModel = directoryModel;
+        this.metrics = metrics;
     }
 
     public Set<Node> execute(SearchCriteria criteria) {
-        if (criteria == null || criteria.getFilters().isEmpty()) {
+        if (criteria == null || criteria.isEmpty()) {
             return Collections.emptySet();
         }
+        return directoryModel.getNodesByOrdinals(evaluate(criteria));
+    }
 
-        List<SearchFilter> filters = criteria.getFilters();
-        List<LogicalOperator> operators = criteria.getOperators();
-
-        Set<Long> resultIds = applyFilter(filters.get(0));
+    /**
+     * Opens a cursor over the matching files in name order. Nothing is sorted or materialized
+     * beyond the match bitmap until the cursor is advanced.
+     */
+    public ResultCursor open(SearchCriteria criteria) {
+        BitSet matches = criteria == null || criteria.isEmpty() ? new BitSet() : evaluate(criteria);
+        return new ResultCursor(directoryModel, matches);
+    }
 
-        for (int i = 1; i < filters.size(); i++) {
-            Set<Long> filterResult = applyFilter(filters.get(i));
-            LogicalOperator operator = operators.get(i - 1);
+    /**
+     * Sum of the matching file sizes. A directory or path filter, a classification filter or both
+     * combined with AND are answered from the precomputed rollups; any other criteria are
+     * summed from the match bitmap without materializing nodes.
+     */
+    public long sumFileSizes(SearchCriteria criteria) {
+        if (criteria == null || criteria.isEmpty()) {
+            return 0;
+        }
+        SearchExpression expression = criteria.toExpression();
+        long start = System.nanoTime();
+        Long rolledUp = rollupSize(expression);
+        if (rolledUp != null) {
+            metrics.record(expression, System.nanoTime() - start, SearchMetrics.UNKNOWN_RESULT_SIZE);
+            SearchEvent event = new SearchEvent();
+            if (event.shouldCommit()) {
+                event.commit(expression, SearchMetrics.UNKNOWN_RESULT_SIZE, true);
+            }
+            return rolledUp;
+        }
+        return directoryModel.sumFileSizes(evaluate(expression));
+    }
 
-            if (operator == LogicalOperator.AND) {
-                resultIds.retainAll(filterResult);
+    private Long rollupSize(SearchExpression expression) {
+        List<SearchExpression> operands = expression instanceof SearchExpression.And and
+                ? and.operands() : List.of(expression);
+        SearchFilter directory = null;
+        SearchFilter classification = null;
+        for (SearchExpression operand : operands) {
+            if (!(operand instanceof SearchExpression.Term term)) {
+                return null;
+            }
+            SearchFilter filter = term.filter();
+            boolean subtree = filter.getType() == FilterType.DIRECTORY_NAME || filter.getType() == FilterType.PATH;
+            if (subtree && !filter.isNegated() && directory == null) {
+                directory = filter;
+            } else if (filter.getType() == FilterType.CLASSIFICATION && classification == null) {
+                classification = filter;
             } else {
-                resultIds.addAll(filterResult);
+                return null;
             }
         }
 
-        return directoryModel.getNodesByIds(resultIds);
+        Long directoryId = directoryModel.getRootId();
+        if (directory != null && directory.getType() == FilterType.PATH) {
+            directoryId = directoryModel.resolvePath(directory.getValue());
+            if (directoryId != null && !directoryModel.getNode(directoryId).isDirectory()) {
+                return null;
+            }
+        } else if (directory != null) {
+            // Rollups are per directory; several directories with the name take the general path
+            List<Long> directories = directoryModel.getDirectoryIdsByName(directory.getValue());
+            if (directories.size() > 1) {
+                return null;
+            }
+            directoryId = directories.isEmpty() ? null : directories.get(0);
+        }
+        if (directoryId == null) {
+            return 0L;
+        }
+        if (classification == null) {
+            return directoryModel.getRollupSize(directoryId, null);
+        }
+        long matching = directoryModel.getRollupSize(directoryId, classification.getValue());
+        return classification.isNegated() ? directoryModel.getRollupSize(directoryId, null) - matching : matching;
     }
 
-    private Set<Long> applyFilter(SearchFilter filter) {
-        return switch (filter.getType()) {
-            case CLASSIFICATION -> findByClassification(filter.getValue(), filter.isNegated());
-            case DIRECTORY_NAME -> findByDirectory(filter.getValue(), filter.isNegated());
-            default -> Collections.emptySet();
-        };
+    /**
+     * Groups the matching files and aggregates their sizes in one pass over the match bitmap.
+     * Empty criteria aggregate every file.
+     */
+    public List<SizeAggregate> aggregate(SearchCriteria criteria, GroupBy groupBy) {
+        BitSet matches = criteria == null || criteria.isEmpty() ? directoryModel.getAllNodeBits() : evaluate(criteria);
+        return directoryModel.aggregateFiles(matches, groupBy);
     }
 
-    private Set<Long> findByClassification(String classification, boolean negate) {
-        Set<Long> result = new HashSet<>();
-        Set<Long> indexed = directoryModel.getNodesByClassification(classification);
-
-        if (negate) {
-            result.addAll(directoryModel.getAllNodeIds());
-            result.removeAll(indexed);
-        } else {
-            result.addAll(indexed);
-        }
-
-        return result;
+    /**
+     * Evaluates the criteria to an ordinal bitmap. The left-to-right chain is folded into an
+     * expression tree, which is compiled against this structure and evaluated once.
+     */
+    BitSet evaluate(SearchCriteria criteria) {
+        return evaluate(criteria.toExpression());
     }
 
-    private Set<Long> findByDirectory(String directoryName, boolean negate) {
-        Set<Long> result = new HashSet<>();
-        Long dirId = directoryModel.getDirectoryIdByName(directoryName);
-
-        if (dirId != null) {
-            Set<Long> descendants = new HashSet<>();
-            directoryModel.getTreeTraversal(dirId).forEach(descendants::add);
-
-            if (negate) {
-                result.addAll(directoryModel.getAllNodeIds());
-                result.removeAll(descendants);
-            } else {
-                result.addAll(descendants);
-            }
-        } else if (negate) {
-            result.addAll(directoryModel.getAllNodeIds());
+    private BitSet evaluate(SearchExpression expression) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        long start = System.nanoTime();
+        BitSet matches = CompiledExpression.compile(expression, directoryModel).evaluate();
+        long resultSize = matches.cardinality();
+        metrics.record(expression, System.nanoTime() - start, resultSize);
+        if (event.shouldCommit()) {
+            event.commit(expression, resultSize, false);
         }
-
-        return result;
+        return matches;
     }
 }
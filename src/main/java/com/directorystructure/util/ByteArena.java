@@ -0,0 +1,321 @@
+package com.directorystructure.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only store of UTF-8 strings in large byte pages. Each entry is a varint length followed
+ * by its bytes and is addressed by {@code (page << 32) | offset}, so millions of names cost one
+ * long per node instead of one String object each. Entries are only decoded when read.
+ */
+public class ByteArena {
+
+    public static final long NO_ADDRESS = -1;
+
+    private static final int PAGE_SIZE = 1 << 20;
+
+    private byte[][] pages = new byte[0][];
+    private int[] pageLengths = new int[0];
+    private int pageCount;
+    private boolean shared;
+
+    public long add(String value) {
+        if (value == null) {
+            return NO_ADDRESS;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return add(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Copies {@code length} bytes starting at absolute index {@code from} of the buffer.
+     */
+    public long add(ByteBuffer source, int from, int length) {
+        int required = varintSize(length) + length;
+        int page = pageCount - 1;
+        if (page < 0 || shared || pages[page].length - pageLengths[page] < required) {
+            page = newPage(required);
+        }
+        byte[] bytes = pages[page];
+        int offset = pageLengths[page];
+        int position = writeVarint(bytes, offset, length);
+        source.get(from, bytes, position, length);
+        pageLengths[page] = position + length;
+        return (long) page << 32 | offset;
+    }
+
+    /**
+     * Copies an entry of another arena into this one.
+     */
+    public long add(ByteArena source, long address) {
+        if (address == NO_ADDRESS) {
+            return NO_ADDRESS;
+        }
+        byte[] bytes = source.page(address);
+        int offset = offset(address);
+        int length = readVarint(bytes, offset);
+        return add(ByteBuffer.wrap(bytes), offset + varintSize(length), length);
+    }
+
+    public String getString(long address) {
+        if (address == NO_ADDRESS) {
+            return null;
+        }
+        byte[] bytes = page(address);
+        int offset = offset(address);
+        int length = readVarint(bytes, offset);
+        return new String(bytes, offset + varintSize(length), length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compares two entries the way {@link String#compareTo} compares their decoded values. Pure
+     * ASCII prefixes are compared byte by byte; the entries are only decoded once a non-ASCII
+     * byte is reached. Absent entries sort first.
+     */
+    public int compare(long a, long b) {
+        if (a == NO_ADDRESS || b == NO_ADDRESS) {
+            return Boolean.compare(a != NO_ADDRESS, b != NO_ADDRESS);
+        }
+        byte[] left = page(a);
+        byte[] right = page(b);
+        int leftLength = readVarint(left, offset(a));
+        int rightLength = readVarint(right, offset(b));
+        int leftStart = offset(a) + varintSize(leftLength);
+        int rightStart = offset(b) + varintSize(rightLength);
+        int common = Math.min(leftLength, rightLength);
+        for (int i = 0; i < common; i++) {
+            byte l = left[leftStart + i];
+            byte r = right[rightStart + i];
+            if ((l | r) < 0) {
+                return getString(a).compareTo(getString(b));
+            }
+            if (l != r) {
+                return l - r;
+            }
+        }
+        return leftLength - rightLength;
+    }
+
+    /**
+     * Compares an entry with a String as {@link String#compareTo} would, with the same ASCII fast path.
+     */
+    public int compare(long address, String value) {
+        if (address == NO_ADDRESS) {
+            return -1;
+        }
+        byte[] bytes = page(address);
+        int length = readVarint(bytes, offset(address));
+        int start = offset(address) + varintSize(length);
+        int common = Math.min(length, value.length());
+        for (int i = 0; i < common; i++) {
+            byte b = bytes[start + i];
+            char c = value.charAt(i);
+            if (b < 0 || c >= 0x80) {
+                return getString(address).compareTo(value);
+            }
+            if (b != c) {
+                return b - c;
+            }
+        }
+        // Every compared unit was ASCII, so whichever side has bytes left also has characters left
+        return length - value.length();
+    }
+
+    /**
+     * Whether the decoded entry starts with the prefix, checked byte by byte while both are ASCII.
+     */
+    public boolean startsWith(long address, String prefix) {
+        if (address == NO_ADDRESS) {
+            return false;
+        }
+        byte[] bytes = page(address);
+        int length = readVarint(bytes, offset(address));
+        int start = offset(address) + varintSize(length);
+        for (int i = 0; i < prefix.length(); i++) {
+            if (i == length) {
+                return false;
+            }
+            byte b = bytes[start + i];
+            char c = prefix.charAt(i);
+            if (b < 0 || c >= 0x80) {
+                return getString(address).startsWith(prefix);
+            }
+            if (b != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends the decoded entry to {@code target}. ASCII entries are copied byte by byte without
+     * creating a String; others are decoded.
+     */
+    public void appendTo(long address, StringBuilder target) {
+        if (address == NO_ADDRESS) {
+            return;
+        }
+        byte[] bytes = page(address);
+        int length = readVarint(bytes, offset(address));
+        int start = offset(address) + varintSize(length);
+        for (int i = 0; i < length; i++) {
+            if (bytes[start + i] < 0) {
+                target.append(new String(bytes, start, length, StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            target.append((char) bytes[start + i]);
+        }
+    }
+
+    /**
+     * Length in bytes of the entry, without its length prefix.
+     */
+    public int length(long address) {
+        return readVarint(page(address), offset(address));
+    }
+
+    /**
+     * Copies the entry's bytes to the start of {@code target}, which must hold {@link #length(long)} bytes.
+     */
+    public void copyTo(long address, byte[] target) {
+        byte[] bytes = page(address);
+        int length = readVarint(bytes, offset(address));
+        System.arraycopy(bytes, offset(address) + varintSize(length), target, 0, length);
+    }
+
+    /**
+     * Whether the entry holds exactly the given bytes.
+     */
+    public boolean equals(long address, ByteBuffer source, int from, int length) {
+        byte[] bytes = page(address);
+        int entryLength = readVarint(bytes, offset(address));
+        if (entryLength != length) {
+            return false;
+        }
+        int start = offset(address) + varintSize(entryLength);
+        for (int i = 0; i < length; i++) {
+            if (bytes[start + i] != source.get(from + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash of the entry's bytes, consistent with {@link #hash(ByteBuffer, int, int)}.
+     */
+    public int hash(long address) {
+        byte[] bytes = page(address);
+        int length = readVarint(bytes, offset(address));
+        return hash(ByteBuffer.wrap(bytes), offset(address) + varintSize(length), length);
+    }
+
+    public static int hash(ByteBuffer source, int from, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + source.get(from + i);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns an arena that shares every existing page. Both arenas keep their entries readable;
+     * the fork starts a fresh page on its first append, so neither writes into the other's space.
+     */
+    public ByteArena fork() {
+        ByteArena fork = new ByteArena();
+        fork.pages = Arrays.copyOf(pages, Math.max(pageCount, 1));
+        fork.pageLengths = Arrays.copyOf(pageLengths, Math.max(pageCount, 1));
+        fork.pageCount = pageCount;
+        fork.shared = pageCount > 0;
+        return fork;
+    }
+
+    /**
+     * Bytes in use across all pages.
+     */
+    public long usedBytes() {
+        long used = 0;
+        for (int page = 0; page < pageCount; page++) {
+            used += pageLengths[page];
+        }
+        return used;
+    }
+
+    public void writeTo(SnapshotWriter writer) throws IOException {
+        writer.writeInt(pageCount);
+        for (int page = 0; page < pageCount; page++) {
+            writer.writeInt(pageLengths[page]);
+            writer.writeBytes(pages[page], pageLengths[page]);
+        }
+    }
+
+    public static ByteArena readFrom(SnapshotReader reader) {
+        ByteArena arena = new ByteArena();
+        int pageCount = reader.readInt();
+        arena.pages = new byte[pageCount][];
+        arena.pageLengths = new int[pageCount];
+        for (int page = 0; page < pageCount; page++) {
+            int length = reader.readInt();
+            arena.pages[page] = new byte[length];
+            arena.pageLengths[page] = length;
+            reader.readBytes(arena.pages[page], length);
+        }
+        arena.pageCount = pageCount;
+        // Restored pages are exactly full, so the next append opens a new one
+        arena.shared = pageCount > 0;
+        return arena;
+    }
+
+    private int newPage(int required) {
+        if (pageCount == pages.length) {
+            int capacity = Math.max(4, pageCount * 2);
+            pages = Arrays.copyOf(pages, capacity);
+            pageLengths = Arrays.copyOf(pageLengths, capacity);
+        }
+        pages[pageCount] = new byte[Math.max(PAGE_SIZE, required)];
+        pageLengths[pageCount] = 0;
+        shared = false;
+        return pageCount++;
+    }
+
+    private byte[] page(long address) {
+        return pages[(int) (address >>> 32)];
+    }
+
+    private static int offset(long address) {
+        return (int) address;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarint(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7f) != 0) {
+            bytes[offset++] = (byte) (value & 0x7f | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static int readVarint(byte[] bytes, int offset) {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = bytes[offset++];
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+}
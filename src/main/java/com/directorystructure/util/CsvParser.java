@@ -1,93 +1,470 @@
 package com.directorystructure.util;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import com.directorystructure.exceptions.DataParsingException;
+import com.directorystructure.metrics.CsvParseEvent;
+import com.directorystructure.metrics.ParserMetrics;
 import com.directorystructure.model.Node;
+import com.directorystructure.model.NodeBuffer;
 import com.directorystructure.model.NodeType;
 
 /**
  * Parses CSV content into FileNode objects.
+ *
+ * Rows are scanned directly as bytes: numbers are parsed in place, type tokens are matched without
+ * decoding, and repeated classification values share one String. Names and checksums are copied
+ * as raw bytes into the buffer's arena and dictionary, so no String is decoded per row.
  */
 public class CsvParser {
 
-    public static List<Node> parse(String resourceName) {
-        List<Node> nodes = new ArrayList<>();
+    private static final int COLUMNS = 7;
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE;
+    private static final int AVERAGE_ROW_BYTES = 48;
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+    private static final long MAX_CHUNK_BYTES = 1L << 28;
+    private static final int CHUNKS_PER_WORKER = 4;
+    private static final int BOUNDARY_WINDOW_BYTES = 8192;
 
+    public static List<Node> parse(String resourceName) {
+        byte[] content;
         try (InputStream inputStream = CsvParser.class.getClassLoader().getResourceAsStream(resourceName)) {
 
             if (inputStream == null) {
                 throw new DataParsingException("Resource not found: " + resourceName);
             }
+            content = inputStream.readAllBytes();
 
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-                reader.lines()
-                        .map(String::trim)
-                        .filter(CsvParser::isValidLine)
-                        .forEach(line -> nodes.add(parseLine(line)));
+        } catch (IOException e) {
+            throw new DataParsingException("Failed to load CSV resource: " + resourceName, e);
+        }
 
-                if (nodes.isEmpty()) {
-                    throw new DataParsingException("CSV file is empty or contains only header: " + resourceName);
-                }
+        CsvParseEvent event = new CsvParseEvent();
+        event.begin();
+        long started = System.nanoTime();
+        NodeBuffer buffer = new NodeBuffer();
+        new RowScanner().scan(ByteBuffer.wrap(content), 0, content.length, buffer);
+        requireRows(buffer, resourceName);
+        ParserMetrics.global().recordParse(buffer.size(), content.length, System.nanoTime() - started);
+        commit(event, resourceName, buffer.size(), content.length, false);
+        return buffer.toNodes();
+    }
 
-            } catch (IOException e) {
-                throw new DataParsingException("Failed to read CSV file: " + resourceName, e);
+    /**
+     * Parses a CSV file from the filesystem by memory-mapping it. Files larger than one mapping
+     * are processed in segments that end on a line break.
+     */
+    public static NodeBuffer parse(Path path) {
+        CsvParseEvent event = new CsvParseEvent();
+        event.begin();
+        long started = System.nanoTime();
+        long fileSize;
+        NodeBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            fileSize = channel.size();
+            buffer = new NodeBuffer((int) Math.min(fileSize / AVERAGE_ROW_BYTES + 16, 1 << 24));
+            RowScanner scanner = new RowScanner();
+
+            long position = 0;
+            while (position < fileSize) {
+                long length = Math.min(MAX_SEGMENT_BYTES, fileSize - position);
+                MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = (int) length;
+                if (position + length < fileSize) {
+                    end = lastLineBreak(segment, end) + 1;
+                    if (end == 0) {
+                        throw new DataParsingException("Line exceeds maximum length in CSV file: " + path);
+                    }
+                }
+                scanner.scan(segment, 0, end, buffer);
+                position += end;
             }
 
+        } catch (NoSuchFileException e) {
+            throw new DataParsingException("File not found: " + path, e);
         } catch (IOException e) {
-            throw new DataParsingException("Failed to load CSV resource: " + resourceName, e);
+            throw new DataParsingException("Failed to read CSV file: " + path, e);
         }
 
-        return nodes;
+        requireRows(buffer, path.toString());
+        ParserMetrics.global().recordParse(buffer.size(), fileSize, System.nanoTime() - started);
+        commit(event, path.toString(), buffer.size(), fileSize, false);
+        return buffer;
     }
 
-    private static boolean isValidLine(String line) {
-        return !line.isEmpty() &&
-                !line.startsWith("#") &&
-                !line.contains("id;");
+    /**
+     * Parses a CSV file on the given fork-join pool. The file is split into chunks that start
+     * right after a line break; each chunk is mapped and scanned by its own task into a separate
+     * buffer. Buffers are returned in file order.
+     */
+    public static List<NodeBuffer> parseParallel(Path path, ForkJoinPool pool) {
+        CsvParseEvent event = new CsvParseEvent();
+        event.begin();
+        long started = System.nanoTime();
+        long fileSize;
+        List<ChunkTask> tasks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            fileSize = channel.size();
+            long chunkSize = Math.max(MIN_CHUNK_BYTES,
+                    Math.min(MAX_CHUNK_BYTES, fileSize / (pool.getParallelism() * CHUNKS_PER_WORKER) + 1));
+
+            long start = 0;
+            while (start < fileSize) {
+                long end = start + chunkSize >= fileSize ? fileSize : nextLineStart(channel, start + chunkSize);
+                tasks.add(new ChunkTask(path, start, end));
+                start = end;
+            }
+
+        } catch (NoSuchFileException e) {
+            throw new DataParsingException("File not found: " + path, e);
+        } catch (IOException e) {
+            throw new DataParsingException("Failed to read CSV file: " + path, e);
+        }
+
+        List<NodeBuffer> buffers = pool.invoke(new RecursiveTask<List<NodeBuffer>>() {
+            @Override
+            protected List<NodeBuffer> compute() {
+                List<NodeBuffer> results = new ArrayList<>(tasks.size());
+                for (ChunkTask task : ForkJoinTask.invokeAll(tasks)) {
+                    results.add(task.join());
+                }
+                return results;
+            }
+        });
+
+        if (buffers.stream().allMatch(NodeBuffer::isEmpty)) {
+            throw new DataParsingException("CSV file is empty or contains only header: " + path);
+        }
+        long rows = buffers.stream().mapToLong(NodeBuffer::size).sum();
+        ParserMetrics.global().recordParse(rows, fileSize, System.nanoTime() - started);
+        commit(event, path.toString(), rows, fileSize, true);
+        return buffers;
     }
 
-    private static Node parseLine(String line) {
-        String[] parts = line.split(";", -1);
-        if (parts.length < 7) {
-            throw new DataParsingException(
-                    "Invalid CSV format - expected 7 columns, got " + parts.length + " in line: " + line);
+    /**
+     * Returns the offset just past the first line break at or after {@code position}, or the file size.
+     */
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(BOUNDARY_WINDOW_BYTES);
+        long fileSize = channel.size();
+        while (position < fileSize) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
         }
+        return fileSize;
+    }
 
-        Long id = parseLong(parts[0]);
-        Long parentId = parseLong(parts[1]);
-        String name = parts[2].trim();
-        NodeType type = NodeType.fromString(parts[3].trim());
-        Long size = parseLong(parts[4]);
-        String classification = parts[5].trim().isEmpty() ? "NA" : parts[5].trim();
-        String checksum = parts[6].trim().isEmpty() ? null : parts[6].trim();
+    private static final class ChunkTask extends RecursiveTask<NodeBuffer> {
+        private final Path path;
+        private final long start;
+        private final long end;
 
-        if (id == null) {
-            throw new DataParsingException("Missing or invalid ID in line: " + line);
+        ChunkTask(Path path, long start, long end) {
+            this.path = path;
+            this.start = start;
+            this.end = end;
         }
-        if (name.isEmpty()) {
-            throw new DataParsingException("Missing name in line: " + line);
+
+        @Override
+        protected NodeBuffer compute() {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                NodeBuffer buffer = new NodeBuffer((int) ((end - start) / AVERAGE_ROW_BYTES + 16));
+                new RowScanner().scan(chunk, 0, (int) (end - start), buffer);
+                return buffer;
+            } catch (IOException e) {
+                throw new DataParsingException("Failed to read CSV file: " + path, e);
+            }
         }
-        if (type == null) {
-            throw new DataParsingException("Invalid type in line: " + line);
+    }
+
+    static int lastLineBreak(ByteBuffer segment, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (segment.get(i) == '\n') {
+                return i;
+            }
         }
+        return -1;
+    }
 
-        return new Node(id, parentId, name, size, type, classification, checksum);
+    private static void commit(CsvParseEvent event, String source, long rows, long bytes, boolean parallel) {
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.rows = rows;
+            event.bytes = bytes;
+            event.parallel = parallel;
+            event.commit();
+        }
     }
 
-    private static Long parseLong(String value) {
-        if (value == null || value.trim().isEmpty()) {
-            return null;
+    private static void requireRows(NodeBuffer buffer, String source) {
+        if (buffer.isEmpty()) {
+            throw new DataParsingException("CSV file is empty or contains only header: " + source);
+        }
+    }
+
+    /**
+     * Stateful byte-level row scanner. Not thread-safe; use one per thread.
+     */
+    static final class RowScanner {
+
+        private static final int MAX_DICTIONARY_ENTRIES = 64;
+
+        private final int[] fieldStart = new int[COLUMNS];
+        private final int[] fieldEnd = new int[COLUMNS];
+        private byte[] scratch = new byte[256];
+
+        private final byte[][] dictionaryKeys = new byte[MAX_DICTIONARY_ENTRIES][];
+        private final String[] dictionaryValues = new String[MAX_DICTIONARY_ENTRIES];
+        private int dictionarySize;
+
+        void scan(ByteBuffer buffer, int from, int to, NodeBuffer out) {
+            int lineStart = from;
+            try {
+                for (int i = from; i < to; i++) {
+                    byte b = buffer.get(i);
+                    if (b == '\n' || b == '\r') {
+                        if (i > lineStart) {
+                            parseLine(buffer, lineStart, i, out);
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                if (to > lineStart) {
+                    parseLine(buffer, lineStart, to, out);
+                }
+            } catch (DataParsingException e) {
+                ParserMetrics.global().recordRejectedRow();
+                throw e;
+            }
         }
-        try {
-            return Long.valueOf(value.trim());
-        } catch (NumberFormatException e) {
-            throw new DataParsingException("Invalid number format: '" + value + "'", e);
+
+        private void parseLine(ByteBuffer buffer, int start, int end, NodeBuffer out) {
+            while (start < end && isWhitespace(buffer.get(start))) {
+                start++;
+            }
+            while (end > start && isWhitespace(buffer.get(end - 1))) {
+                end--;
+            }
+            if (start == end || buffer.get(start) == '#') {
+                return;
+            }
+
+            int separators = 0;
+            fieldStart[0] = start;
+            for (int i = start; i < end; i++) {
+                if (buffer.get(i) == ';') {
+                    if (separators < COLUMNS) {
+                        fieldEnd[separators] = i;
+                    }
+                    separators++;
+                    if (separators < COLUMNS) {
+                        fieldStart[separators] = i + 1;
+                    }
+                }
+            }
+            if (separators < COLUMNS) {
+                fieldEnd[separators] = end;
+            }
+            if (isHeader(buffer)) {
+                return;
+            }
+            int parts = separators + 1;
+            if (parts < COLUMNS) {
+                throw new DataParsingException(
+                        "Invalid CSV format - expected 7 columns, got " + parts + " in line: "
+                                + decode(buffer, start, end));
+            }
+
+            long id = parseLong(buffer, 0);
+            long parentId = parseLong(buffer, 1);
+            int nameFrom = trimStart(buffer, 2);
+            int nameTo = trimEnd(buffer, 2);
+            NodeType type = parseType(buffer, 3);
+            long size = parseLong(buffer, 4);
+            String classification = lookupClassification(buffer, 5);
+
+            if (id == NodeBuffer.NO_VALUE) {
+                throw new DataParsingException("Missing or invalid ID in line: " + decode(buffer, start, end));
+            }
+            if (nameFrom == nameTo) {
+                throw new DataParsingException("Missing name in line: " + decode(buffer, start, end));
+            }
+
+            out.add(id, parentId, buffer, nameFrom, nameTo, type, size, classification,
+                    trimStart(buffer, 6), trimEnd(buffer, 6));
+        }
+
+        private boolean isHeader(ByteBuffer buffer) {
+            int from = trimStart(buffer, 0);
+            int to = trimEnd(buffer, 0);
+            return to - from == 2
+                    && (buffer.get(from) | 0x20) == 'i'
+                    && (buffer.get(from + 1) | 0x20) == 'd';
+        }
+
+        private long parseLong(ByteBuffer buffer, int field) {
+            int from = trimStart(buffer, field);
+            int to = trimEnd(buffer, field);
+            if (from == to) {
+                return NodeBuffer.NO_VALUE;
+            }
+
+            int i = from;
+            boolean negative = false;
+            byte first = buffer.get(i);
+            if (first == '-' || first == '+') {
+                negative = first == '-';
+                i++;
+            }
+            if (i == to) {
+                throw invalidNumber(buffer, field);
+            }
+
+            // Accumulate negatively so Long.MIN_VALUE parses without overflow, as Long.parseLong does
+            long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+            long multiplyLimit = limit / 10;
+            long result = 0;
+            for (; i < to; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                    throw invalidNumber(buffer, field);
+                }
+                result *= 10;
+                if (result < limit + digit) {
+                    throw invalidNumber(buffer, field);
+                }
+                result -= digit;
+            }
+            return negative ? result : -result;
+        }
+
+        private DataParsingException invalidNumber(ByteBuffer buffer, int field) {
+            String value = decode(buffer, fieldStart[field], fieldEnd[field]);
+            return new DataParsingException("Invalid number format: '" + value + "'",
+                    new NumberFormatException("For input string: \"" + value.trim() + "\""));
+        }
+
+        private NodeType parseType(ByteBuffer buffer, int field) {
+            int from = trimStart(buffer, field);
+            int to = trimEnd(buffer, field);
+            if (from == to) {
+                throw new DataParsingException("Node type cannot be null or empty");
+            }
+            if (matchesIgnoreCase(buffer, from, to, "file")) {
+                return NodeType.FILE;
+            }
+            if (matchesIgnoreCase(buffer, from, to, "directory")) {
+                return NodeType.DIRECTORY;
+            }
+            throw new DataParsingException("Invalid node type: '" + decode(buffer, from, to)
+                    + "'. Must be 'file' or 'directory'");
+        }
+
+        private static boolean matchesIgnoreCase(ByteBuffer buffer, int from, int to, String lowerCaseToken) {
+            if (to - from != lowerCaseToken.length()) {
+                return false;
+            }
+            for (int i = 0; i < lowerCaseToken.length(); i++) {
+                if ((buffer.get(from + i) | 0x20) != lowerCaseToken.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Returns a shared String for repeated classification tokens, decoding only the first occurrence.
+         */
+        private String lookupClassification(ByteBuffer buffer, int field) {
+            int from = trimStart(buffer, field);
+            int to = trimEnd(buffer, field);
+            if (from == to) {
+                return "NA";
+            }
+            int length = to - from;
+            for (int entry = 0; entry < dictionarySize; entry++) {
+                byte[] key = dictionaryKeys[entry];
+                if (key.length == length && regionEquals(buffer, from, key)) {
+                    return dictionaryValues[entry];
+                }
+            }
+            String value = decode(buffer, from, to);
+            if (dictionarySize < MAX_DICTIONARY_ENTRIES) {
+                dictionaryKeys[dictionarySize] = value.getBytes(StandardCharsets.UTF_8);
+                dictionaryValues[dictionarySize] = value;
+                dictionarySize++;
+            }
+            return value;
+        }
+
+        private static boolean regionEquals(ByteBuffer buffer, int from, byte[] key) {
+            for (int i = 0; i < key.length; i++) {
+                if (buffer.get(from + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private String decode(ByteBuffer buffer, int from, int to) {
+            int length = to - from;
+            if (length == 0) {
+                return "";
+            }
+            if (buffer.hasArray()) {
+                return new String(buffer.array(), buffer.arrayOffset() + from, length, StandardCharsets.UTF_8);
+            }
+            if (scratch.length < length) {
+                scratch = Arrays.copyOf(scratch, Math.max(length, scratch.length * 2));
+            }
+            buffer.get(from, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private int trimStart(ByteBuffer buffer, int field) {
+            int from = fieldStart[field];
+            int to = fieldEnd[field];
+            while (from < to && isWhitespace(buffer.get(from))) {
+                from++;
+            }
+            return from;
+        }
+
+        private int trimEnd(ByteBuffer buffer, int field) {
+            int from = fieldStart[field];
+            int to = fieldEnd[field];
+            while (to > from && isWhitespace(buffer.get(to - 1))) {
+                to--;
+            }
+            return to;
+        }
+
+        private static boolean isWhitespace(byte b) {
+            return b >= 0 && b <= ' ';
         }
     }
-}
\ No newline at end of file
+}
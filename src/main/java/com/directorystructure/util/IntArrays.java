@@ -0,0 +1,70 @@
+package com.directorystructure.util;
+
+/**
+ * Primitive int array helpers that avoid boxing to Integer for comparator-based sorting.
+ */
+public final class IntArrays {
+
+    @FunctionalInterface
+    public interface IntComparator {
+        int compare(int a, int b);
+    }
+
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+
+    private IntArrays() {
+    }
+
+    /**
+     * Stable sort of {@code a[from, to)} with the given comparator.
+     */
+    public static void sort(int[] a, int from, int to, IntComparator comparator) {
+        if (to - from < 2) {
+            return;
+        }
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(a, from, to, comparator);
+            return;
+        }
+        int[] scratch = new int[to - from];
+        mergeSort(a, scratch, from, to, comparator);
+    }
+
+    public static void sort(int[] a, IntComparator comparator) {
+        sort(a, 0, a.length, comparator);
+    }
+
+    private static void mergeSort(int[] a, int[] scratch, int from, int to, IntComparator comparator) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(a, from, to, comparator);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(a, scratch, from, mid, comparator);
+        mergeSort(a, scratch, mid, to, comparator);
+        if (comparator.compare(a[mid - 1], a[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(a, from, scratch, 0, mid - from);
+        int left = 0;
+        int leftEnd = mid - from;
+        int right = mid;
+        int out = from;
+        while (left < leftEnd && right < to) {
+            a[out++] = comparator.compare(scratch[left], a[right]) <= 0 ? scratch[left++] : a[right++];
+        }
+        System.arraycopy(scratch, left, a, out, leftEnd - left);
+    }
+
+    private static void insertionSort(int[] a, int from, int to, IntComparator comparator) {
+        for (int i = from + 1; i < to; i++) {
+            int value = a[i];
+            int j = i - 1;
+            while (j >= from && comparator.compare(a[j], value) > 0) {
+                a[j + 1] = a[j];
+                j--;
+            }
+            a[j + 1] = value;
+        }
+    }
+}
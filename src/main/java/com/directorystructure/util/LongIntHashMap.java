@@ -0,0 +1,166 @@
+package com.directorystructure.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from primitive long keys to non-negative int values.
+ * Avoids the boxed entries of a HashMap&lt;Long, Integer&gt; for id-to-ordinal lookups.
+ */
+public class LongIntHashMap {
+
+    public static final int NO_VALUE = -1;
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private int size;
+    private int resizeThreshold;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            if (values[slot] == NO_VALUE) {
+                return NO_VALUE;
+            }
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != NO_VALUE;
+    }
+
+    /**
+     * Associates the key with the value and returns the previous value, or {@link #NO_VALUE}.
+     */
+    public int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must be non-negative: " + value);
+        }
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask;; slot = (slot + 1) & mask) {
+            if (values[slot] == NO_VALUE) {
+                keys[slot] = key;
+                values[slot] = value;
+                if (++size > resizeThreshold) {
+                    rehash(keys.length << 1);
+                }
+                return NO_VALUE;
+            }
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * Removes the key using backward-shift deletion so probe chains stay intact.
+     */
+    public int remove(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (values[slot] != NO_VALUE && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == NO_VALUE) {
+            return NO_VALUE;
+        }
+        int previous = values[slot];
+        int gap = slot;
+        for (int next = (gap + 1) & mask; values[next] != NO_VALUE; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = NO_VALUE;
+        size--;
+        return previous;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public LongIntHashMap copy() {
+        LongIntHashMap copy = new LongIntHashMap(1);
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.size = size;
+        copy.resizeThreshold = resizeThreshold;
+        return copy;
+    }
+
+    /**
+     * Writes the raw table, so {@link #readFrom(SnapshotReader)} restores it without rehashing.
+     */
+    public void writeTo(SnapshotWriter writer) throws IOException {
+        writer.writeInt(keys.length);
+        writer.writeInt(size);
+        writer.writeLongs(keys, keys.length);
+        writer.writeInts(values, values.length);
+    }
+
+    public static LongIntHashMap readFrom(SnapshotReader reader) {
+        int capacity = reader.readInt();
+        LongIntHashMap map = new LongIntHashMap(1);
+        map.keys = new long[capacity];
+        map.values = new int[capacity];
+        map.size = reader.readInt();
+        map.resizeThreshold = (int) (capacity * LOAD_FACTOR);
+        reader.readLongs(map.keys, capacity);
+        reader.readInts(map.values, capacity);
+        return map;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != NO_VALUE) {
+                int mask = keys.length - 1;
+                int slot = hash(oldKeys[i]) & mask;
+                while (values[slot] != NO_VALUE) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, NO_VALUE);
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        long needed = (long) Math.ceil(Math.max(expectedSize, 2) / LOAD_FACTOR);
+        int capacity = Integer.highestOneBit((int) Math.min(needed, 1 << 30));
+        return capacity < needed ? capacity << 1 : capacity;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -1,58 +1,236 @@
 package com.directorystructure.util;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+import com.directorystructure.metrics.FormatEvent;
 import com.directorystructure.model.DirectoryStructure;
 import com.directorystructure.model.Node;
 
 public class ResultFormatter {
 
+    private static final String NO_STRUCTURE = "No file system structure found";
+
     public static String formatTree(DirectoryStructure repository) {
+        StringWriter writer = new StringWriter();
+        try {
+            formatTree(repository, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Streams the indented tree to the writer in pre-order. The walk reads the ordinal columns
+     * directly, indents come from one shared space buffer and each line is rendered into a reused
+     * buffer, with names copied from the arena, so no object is created per node. The writer is
+     * neither flushed nor closed.
+     */
+    public static void formatTree(DirectoryStructure repository, Writer writer) throws IOException {
+        if (repository.getRootId() == null) {
+            writer.write(NO_STRUCTURE);
+            return;
+        }
+
+        FormatEvent event = new FormatEvent();
+        event.begin();
+        TreeWriter tree = new TreeWriter(repository, writer);
+        repository.walkTree(tree);
+        commit(event, "tree", tree.lines, tree.characters);
+    }
+
+    /**
+     * Renders one line per visited ordinal; the buffers grow to the deepest indent and longest line.
+     */
+    private static final class TreeWriter implements DirectoryStructure.TreeVisitor {
+
+        private final DirectoryStructure repository;
+        private final Writer writer;
+        private final StringBuilder sb = new StringBuilder(256);
+        private char[] indent = new char[0];
+        private char[] line = new char[256];
+        private long lines;
+        private long characters;
+
+        TreeWriter(DirectoryStructure repository, Writer writer) {
+            this.repository = repository;
+            this.writer = writer;
+        }
 
+        @Override
+        public void visit(int ordinal, int depth) throws IOException {
+            if (depth > indent.length) {
+                indent = new char[Math.max(depth, indent.length * 2)];
+                Arrays.fill(indent, ' ');
+            }
+            writer.write(indent, 0, depth);
+
+            sb.setLength(0);
+            appendNodeAt(sb, repository, ordinal).append('\n');
+            if (sb.length() > line.length) {
+                line = new char[Math.max(sb.length(), line.length * 2)];
+            }
+            sb.getChars(0, sb.length(), line, 0);
+            writer.write(line, 0, sb.length());
+            lines++;
+            characters += depth + sb.length();
+        }
+    }
+
+    /**
+     * Streams the full path of every node in pre-order, one per line. The path of the current
+     * branch is kept in one buffer and cut back to the parent's length at each node, so no path
+     * is rebuilt from the root.
+     */
+    public static void formatPaths(DirectoryStructure repository, Writer writer) throws IOException {
         Long rootId = repository.getRootId();
         if (rootId == null) {
-            return "No file system structure found";
+            writer.write(NO_STRUCTURE);
+            return;
         }
 
-        StringBuilder sb = new StringBuilder();
-        Map<Long, String> indentMap = new HashMap<>();
-        indentMap.put(rootId, "");
-
+        FormatEvent event = new FormatEvent();
+        event.begin();
+        long lines = 0;
+        long characters = 0;
+        StringBuilder path = new StringBuilder(256);
+        int[] lengths = new int[16];
         for (Long nodeId : repository.getTreeTraversal(rootId)) {
             Node node = repository.getNode(nodeId);
             if (node == null)
                 continue;
 
-            String indent = indentMap.getOrDefault(nodeId, "");
-            sb.append(indent).append(formatNode(node)).append("\n");
+            int depth = Math.max(repository.getDepth(nodeId), 0);
+            if (depth + 1 >= lengths.length) {
+                lengths = Arrays.copyOf(lengths, Math.max(depth + 2, lengths.length * 2));
+            }
+            path.setLength(lengths[depth]);
+            path.append('/').append(node.getName());
+            lengths[depth + 1] = path.length();
+            writer.append(path).append('\n');
+            lines++;
+            characters += path.length() + 1;
+        }
+        commit(event, "paths", lines, characters);
+    }
 
-            String childIndent = indent + " ";
-            for (Long childId : repository.getChildren(nodeId)) {
-                indentMap.put(childId, childIndent);
+    /**
+     * Formats the full path of each file in iterator order; directories are skipped. Parent
+     * paths come from parent pointers and are reused for every file of the same directory.
+     */
+    public static String formatSearchResultPaths(DirectoryStructure repository, Iterator<Node> nodes) {
+        FormatEvent event = new FormatEvent();
+        event.begin();
+        long lines = 0;
+        Map<Long, String> directoryPaths = new HashMap<>();
+        StringBuilder sb = new StringBuilder();
+        while (nodes.hasNext()) {
+            Node node = nodes.next();
+            if (node.isDirectory()) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append("\n");
             }
+            if (node.getParentId() != null) {
+                sb.append(directoryPaths.computeIfAbsent(node.getParentId(), repository::getPath));
+            }
+            sb.append('/').append(node.getName());
+            lines++;
         }
+        commit(event, "searchResultPaths", lines, sb.length());
+        return sb.toString();
+    }
 
+    /**
+     * Formats files in the order the iterator returns them; directories are skipped.
+     */
+    public static String formatSearchResults(Iterator<Node> nodes) {
+        FormatEvent event = new FormatEvent();
+        event.begin();
+        long lines = 0;
+        StringBuilder sb = new StringBuilder();
+        while (nodes.hasNext()) {
+            Node node = nodes.next();
+            if (node.isDirectory()) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            appendNode(sb, node);
+            lines++;
+        }
+        commit(event, "searchResults", lines, sb.length());
         return sb.toString();
     }
 
     public static String formatSearchResults(Set<Node> nodes) {
-        return nodes.stream()
+        FormatEvent event = new FormatEvent();
+        event.begin();
+        Node[] files = nodes.stream()
                 .filter(node -> !node.isDirectory())
                 .sorted(Comparator.comparing(Node::getName))
-                .map(ResultFormatter::formatNode)
-                .collect(Collectors.joining("\n"));
+                .toArray(Node[]::new);
+        StringBuilder sb = new StringBuilder();
+        for (Node file : files) {
+            if (sb.length() > 0) {
+                sb.append("\n");
+            }
+            appendNode(sb, file);
+        }
+        commit(event, "searchResults", files.length, sb.length());
+        return sb.toString();
     }
 
-    private static String formatNode(Node node) {
-        if (node == null)
-            return "";
+    private static void commit(FormatEvent event, String output, long lines, long characters) {
+        if (event.shouldCommit()) {
+            event.output = output;
+            event.lines = lines;
+            event.characters = characters;
+            event.commit();
+        }
+    }
+
+    /**
+     * Same format as {@link #appendNode(StringBuilder, Node)}, read from the columns by ordinal.
+     */
+    private static StringBuilder appendNodeAt(StringBuilder sb, DirectoryStructure repository, int ordinal) {
+        sb.append("name = ");
+        repository.appendNameAt(ordinal, sb);
+        boolean directory = repository.isDirectoryAt(ordinal);
+        sb.append(", type = ").append(directory ? "Directory" : "File");
+
+        long size = repository.getSizeAt(ordinal);
+        if (size != DirectoryStructure.NO_SIZE) {
+            sb.append(", size = ").append(size);
+        }
 
-        StringBuilder sb = new StringBuilder()
-                .append("name = ").append(node.getName())
+        if (!directory) {
+            String classification = repository.getClassificationAt(ordinal);
+            if (classification != null) {
+                sb.append(", classification = ").append(classification);
+            }
+            if (repository.hasChecksumAt(ordinal)) {
+                sb.append(", checksum = ");
+                repository.appendChecksumAt(ordinal, sb);
+            }
+        }
+
+        return sb;
+    }
+
+    private static StringBuilder appendNode(StringBuilder sb, Node node) {
+        sb.append("name = ").append(node.getName())
                 .append(", type = ").append(node.isDirectory() ? "Directory" : "File");
 
         if (node.getSize() != null) {
@@ -68,6 +246,6 @@ public class ResultFormatter {
             }
         }
 
-        return sb.toString();
+        return sb;
     }
 }
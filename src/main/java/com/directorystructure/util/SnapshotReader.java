@@ -0,0 +1,124 @@
+package com.directorystructure.util;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.directorystructure.exceptions.DataParsingException;
+
+/**
+ * Sequential reader over a memory-mapped snapshot written by {@link SnapshotWriter}. The file
+ * is mapped in windows of up to 256MB, so arrays are bulk-copied straight from the page cache
+ * and files larger than 2GB need no special handling.
+ */
+public class SnapshotReader implements AutoCloseable {
+
+    private static final long WINDOW_SIZE = 1L << 28;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long fileSize;
+    private MappedByteBuffer window;
+    private long windowStart;
+    private long position;
+
+    public SnapshotReader(Path file) {
+        this.file = file;
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.fileSize = channel.size();
+        } catch (NoSuchFileException e) {
+            throw new DataParsingException("File not found: " + file, e);
+        } catch (IOException e) {
+            throw new DataParsingException("Failed to read snapshot file: " + file, e);
+        }
+    }
+
+    public byte readByte() {
+        return window(Byte.BYTES).get();
+    }
+
+    public int readInt() {
+        return window(Integer.BYTES).getInt();
+    }
+
+    public long readLong() {
+        return window(Long.BYTES).getLong();
+    }
+
+    public void readBytes(byte[] target, int length) {
+        for (int offset = 0; offset < length;) {
+            MappedByteBuffer buffer = window(1);
+            int chunk = Math.min(length - offset, buffer.remaining());
+            buffer.get(target, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    public void readInts(int[] target, int length) {
+        for (int offset = 0; offset < length;) {
+            MappedByteBuffer buffer = window(Integer.BYTES);
+            int chunk = Math.min(length - offset, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().get(target, offset, chunk);
+            buffer.position(buffer.position() + chunk * Integer.BYTES);
+            offset += chunk;
+        }
+    }
+
+    public void readLongs(long[] target, int length) {
+        for (int offset = 0; offset < length;) {
+            MappedByteBuffer buffer = window(Long.BYTES);
+            int chunk = Math.min(length - offset, buffer.remaining() / Long.BYTES);
+            buffer.asLongBuffer().get(target, offset, chunk);
+            buffer.position(buffer.position() + chunk * Long.BYTES);
+            offset += chunk;
+        }
+    }
+
+    public String readString() {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        readBytes(bytes, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Positions the current window at the read position, remapping when fewer than
+     * {@code bytes} bytes are left in it.
+     */
+    private MappedByteBuffer window(int bytes) {
+        if (window != null) {
+            position = windowStart + window.position();
+        }
+        if (position + bytes > fileSize) {
+            throw new DataParsingException("Snapshot file is truncated: " + file);
+        }
+        if (window == null || window.remaining() < bytes) {
+            try {
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, fileSize - position));
+                window.order(ByteOrder.LITTLE_ENDIAN);
+            } catch (IOException e) {
+                throw new DataParsingException("Failed to read snapshot file: " + file, e);
+            }
+        }
+        return window;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new DataParsingException("Failed to read snapshot file: " + file, e);
+        }
+    }
+}
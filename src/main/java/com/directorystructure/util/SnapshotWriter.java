@@ -0,0 +1,110 @@
+package com.directorystructure.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Sequential little-endian writer for binary snapshots. Primitive arrays are copied through a
+ * direct buffer in bulk rather than element by element.
+ */
+public class SnapshotWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    public SnapshotWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    public void writeByte(byte value) throws IOException {
+        reserve(Byte.BYTES);
+        buffer.put(value);
+    }
+
+    public void writeInt(int value) throws IOException {
+        reserve(Integer.BYTES);
+        buffer.putInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        reserve(Long.BYTES);
+        buffer.putLong(value);
+    }
+
+    public void writeBytes(byte[] values, int length) throws IOException {
+        for (int offset = 0; offset < length;) {
+            reserve(1);
+            int chunk = Math.min(length - offset, buffer.remaining());
+            buffer.put(values, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    public void writeInts(int[] values, int length) throws IOException {
+        for (int offset = 0; offset < length;) {
+            reserve(Integer.BYTES);
+            int chunk = Math.min(length - offset, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().put(values, offset, chunk);
+            buffer.position(buffer.position() + chunk * Integer.BYTES);
+            offset += chunk;
+        }
+    }
+
+    public void writeLongs(long[] values, int length) throws IOException {
+        for (int offset = 0; offset < length;) {
+            reserve(Long.BYTES);
+            int chunk = Math.min(length - offset, buffer.remaining() / Long.BYTES);
+            buffer.asLongBuffer().put(values, offset, chunk);
+            buffer.position(buffer.position() + chunk * Long.BYTES);
+            offset += chunk;
+        }
+    }
+
+    /**
+     * Length-prefixed UTF-8; null is written as length -1.
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeInt(bytes.length);
+        writeBytes(bytes, bytes.length);
+    }
+
+    private void reserve(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Writes out the buffer and forces the file to storage before closing it.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.directorystructure.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Dictionary encoding for repetitive string attributes: every distinct value is stored once in
+ * a {@link ByteArena} and rows hold its dense int code. Lookups hash raw UTF-8 bytes, so a parser
+ * can intern a field straight from its input buffer without creating a String.
+ */
+public class StringDictionary {
+
+    public static final int NO_CODE = -1;
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private ByteArena arena = new ByteArena();
+    private long[] addresses = new long[16];
+    private int size;
+    private int[] table = emptyTable(32);
+
+    public int intern(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        return intern(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Code of the {@code length} bytes at absolute index {@code from}, adding them if new.
+     */
+    public int intern(ByteBuffer source, int from, int length) {
+        int hash = ByteArena.hash(source, from, length);
+        int mask = table.length - 1;
+        int slot = mix(hash) & mask;
+        for (; table[slot] != NO_CODE; slot = (slot + 1) & mask) {
+            if (arena.equals(addresses[table[slot]], source, from, length)) {
+                return table[slot];
+            }
+        }
+        if (size == addresses.length) {
+            addresses = Arrays.copyOf(addresses, size * 2);
+        }
+        addresses[size] = arena.add(source, from, length);
+        table[slot] = size;
+        if (++size > table.length * LOAD_FACTOR) {
+            rehash(table.length * 2);
+        }
+        return size - 1;
+    }
+
+    /**
+     * Code of an existing value, or {@link #NO_CODE}; never adds.
+     */
+    public int find(String value) {
+        if (value == null) {
+            return NO_CODE;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer source = ByteBuffer.wrap(bytes);
+        int mask = table.length - 1;
+        for (int slot = mix(ByteArena.hash(source, 0, bytes.length)) & mask; table[slot] != NO_CODE;
+                slot = (slot + 1) & mask) {
+            if (arena.equals(addresses[table[slot]], source, 0, bytes.length)) {
+                return table[slot];
+            }
+        }
+        return NO_CODE;
+    }
+
+    public String get(int code) {
+        return code != NO_CODE ? arena.getString(addresses[code]) : null;
+    }
+
+    /**
+     * Appends the value of the code to {@code target} without creating a String when it is ASCII.
+     */
+    public void appendTo(int code, StringBuilder target) {
+        if (code != NO_CODE) {
+            arena.appendTo(addresses[code], target);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a copy that shares the stored bytes; codes stay valid in both.
+     */
+    public StringDictionary fork() {
+        StringDictionary fork = new StringDictionary();
+        fork.arena = arena.fork();
+        fork.addresses = addresses.clone();
+        fork.size = size;
+        fork.table = table.clone();
+        return fork;
+    }
+
+    public void writeTo(SnapshotWriter writer) throws IOException {
+        arena.writeTo(writer);
+        writer.writeInt(size);
+        writer.writeLongs(addresses, size);
+        writer.writeInt(table.length);
+        writer.writeInts(table, table.length);
+    }
+
+    public static StringDictionary readFrom(SnapshotReader reader) {
+        StringDictionary dictionary = new StringDictionary();
+        dictionary.arena = ByteArena.readFrom(reader);
+        dictionary.size = reader.readInt();
+        dictionary.addresses = new long[Math.max(dictionary.size, 16)];
+        reader.readLongs(dictionary.addresses, dictionary.size);
+        dictionary.table = new int[reader.readInt()];
+        reader.readInts(dictionary.table, dictionary.table.length);
+        return dictionary;
+    }
+
+    private void rehash(int capacity) {
+        int[] rehashed = emptyTable(capacity);
+        int mask = capacity - 1;
+        for (int code = 0; code < size; code++) {
+            int slot = mix(arena.hash(addresses[code])) & mask;
+            while (rehashed[slot] != NO_CODE) {
+                slot = (slot + 1) & mask;
+            }
+            rehashed[slot] = code;
+        }
+        table = rehashed;
+    }
+
+    private static int[] emptyTable(int capacity) {
+        int[] empty = new int[capacity];
+        Arrays.fill(empty, NO_CODE);
+        return empty;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
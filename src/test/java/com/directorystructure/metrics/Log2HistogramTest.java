@@ -0,0 +1,32 @@
+package com.directorystructure.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Log2Histogram Tests")
+class Log2HistogramTest {
+
+    @Test
+    @DisplayName("Should bucket by powers of two and report bucket upper bounds as percentiles")
+    void shouldReportBucketPercentiles() {
+        Log2Histogram histogram = new Log2Histogram();
+        assertThat(histogram.getPercentile(99)).isZero();
+
+        for (int i = 0; i < 98; i++) {
+            histogram.record(100);
+        }
+        histogram.record(0);
+        histogram.record(5000);
+
+        assertThat(histogram.getCount()).isEqualTo(100);
+        assertThat(histogram.getSum()).isEqualTo(98 * 100 + 5000);
+        assertThat(histogram.getMax()).isEqualTo(5000);
+        assertThat(histogram.getBuckets()[0]).isEqualTo(1);
+        assertThat(histogram.getBuckets()[7]).isEqualTo(98);
+        assertThat(histogram.getPercentile(50)).isEqualTo(127);
+        assertThat(histogram.getPercentile(99)).isEqualTo(127);
+        assertThat(histogram.getPercentile(100)).isEqualTo(5000);
+    }
+}
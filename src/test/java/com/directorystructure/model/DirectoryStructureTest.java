@@ -1,6 +1,9 @@
 package com.directorystructure.model;
 
+import java.util.BitSet;
+import java.util.List;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatCode;
@@ -216,4 +219,366 @@ class DirectoryStructureTest {
         assertThat(nodes.stream().map(Node::getId))
                 .containsExactlyInAnyOrder(1L, 2L);
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should expose classification and subtree bitmaps over dense ordinals")
+    void shouldExposeOrdinalBitmaps() {
+        Node root = new Node(10L, null, "root", null, NodeType.DIRECTORY, null, null);
+        Node dir = new Node(20L, 10L, "dir", null, NodeType.DIRECTORY, null, null);
+        Node file1 = new Node(30L, 20L, "file1.txt", 100L, NodeType.FILE, "Public", "hash1");
+        Node file2 = new Node(40L, 10L, "file2.txt", 200L, NodeType.FILE, "Public", "hash2");
+
+        directoryStructure.addNode(root);
+        directoryStructure.addNode(dir);
+        directoryStructure.addNode(file1);
+        directoryStructure.addNode(file2);
+
+        assertThat(directoryStructure.getNodeCount()).isEqualTo(4);
+        assertThat(directoryStructure.getAllNodeBits().cardinality()).isEqualTo(4);
+
+        BitSet publicAndInDir = (BitSet) directoryStructure.getClassificationBits("Public").clone();
+        publicAndInDir.and(directoryStructure.getSubtreeBits(20L));
+
+        assertThat(directoryStructure.getNodesByOrdinals(publicAndInDir).stream().map(Node::getId))
+                .containsExactly(30L);
+        assertThat(directoryStructure.getClassificationBits("Nonexistent").isEmpty()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should answer subtree membership from pre-order intervals")
+    void shouldAnswerSubtreeMembershipFromPreOrderIntervals() {
+        directoryStructure.addNode(new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null));
+        directoryStructure.addNode(new Node(2L, 1L, "a", null, NodeType.DIRECTORY, null, null));
+        directoryStructure.addNode(new Node(3L, 2L, "a1.txt", 10L, NodeType.FILE, "Public", "hash1"));
+        directoryStructure.addNode(new Node(4L, 1L, "b", null, NodeType.DIRECTORY, null, null));
+        directoryStructure.addNode(new Node(5L, 4L, "b1.txt", 20L, NodeType.FILE, "Secret", "hash2"));
+        directoryStructure.computeAllSizes();
+
+        assertThat(directoryStructure.isDescendant(3L, 2L)).isTrue();
+        assertThat(directoryStructure.isDescendant(3L, 1L)).isTrue();
+        assertThat(directoryStructure.isDescendant(5L, 2L)).isFalse();
+        assertThat(directoryStructure.isDescendant(1L, 2L)).isFalse();
+        assertThat(directoryStructure.getSubtreeNodeCount(2L)).isEqualTo(2);
+        assertThat(directoryStructure.getSubtreeNodeCount(1L)).isEqualTo(5);
+
+        BitSet all = (BitSet) directoryStructure.getAllNodeBits().clone();
+        directoryStructure.retainSubtree(all, 4L, false);
+        assertThat(directoryStructure.getNodesByOrdinals(all).stream().map(Node::getId))
+                .containsExactlyInAnyOrder(4L, 5L);
+
+        BitSet outside = (BitSet) directoryStructure.getAllNodeBits().clone();
+        directoryStructure.retainSubtree(outside, 4L, true);
+        assertThat(directoryStructure.getNodesByOrdinals(outside).stream().map(Node::getId))
+                .containsExactlyInAnyOrder(1L, 2L, 3L);
+    }
+
+    @Test
+    @DisplayName("Should bulk load children before parents and keep same-named siblings")
+    void shouldBulkLoadRowsInAnyOrder() {
+        directoryStructure.bulkLoad(List.of(
+                new Node(3L, 2L, "same.txt", 10L, NodeType.FILE, "Public", "hash1"),
+                new Node(4L, 2L, "same.txt", 20L, NodeType.FILE, "Secret", "hash2"),
+                new Node(5L, 1L, "a.txt", 5L, NodeType.FILE, "Public", "hash3"),
+                new Node(2L, 1L, "dir", null, NodeType.DIRECTORY, null, null),
+                new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null)));
+        directoryStructure.computeAllSizes();
+
+        assertThat(directoryStructure.getRootId()).isEqualTo(1L);
+        assertThat(directoryStructure.getChildren(1L)).containsExactly(5L, 2L);
+        assertThat(directoryStructure.getChildren(2L)).containsExactly(3L, 4L);
+        assertThat(directoryStructure.getNode(1L).getSize()).isEqualTo(35);
+        assertThat(directoryStructure.getNodesByClassification("Public")).containsExactlyInAnyOrder(3L, 5L);
+        assertThat(directoryStructure.getDirectoryIdByName("dir")).isEqualTo(2L);
+    }
+
+    @Test
+    @DisplayName("Should validate links in bulk regardless of row order")
+    void shouldValidateBulkLoadedLinks() {
+        Node root = new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null);
+
+        assertThatThrownBy(() -> new DirectoryStructure().bulkLoad(List.of(
+                new Node(3L, 2L, "child.txt", 1L, NodeType.FILE, "Public", null),
+                new Node(2L, 1L, "file.txt", 1L, NodeType.FILE, "Public", null),
+                root)))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Only directories can have children");
+
+        assertThatThrownBy(() -> new DirectoryStructure().bulkLoad(List.of(
+                root, new Node(2L, 99L, "orphan.txt", 1L, NodeType.FILE, "Public", null))))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Parent node 99 not found for node 2");
+
+        assertThatThrownBy(() -> new DirectoryStructure().bulkLoad(List.of(
+                root, new Node(1L, 1L, "again", null, NodeType.DIRECTORY, null, null))))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Duplicate node ID: 1");
+
+        assertThatThrownBy(() -> new DirectoryStructure().bulkLoad(List.of(
+                root,
+                new Node(2L, 3L, "a", null, NodeType.DIRECTORY, null, null),
+                new Node(3L, 2L, "b", null, NodeType.DIRECTORY, null, null))))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("not reachable from the root");
+    }
+
+    @Test
+    @DisplayName("Should keep directory sizes current across insert, resize, move and remove")
+    void shouldMaintainSizesIncrementally() {
+        directoryStructure.bulkLoad(List.of(
+                new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null),
+                new Node(2L, 1L, "a", null, NodeType.DIRECTORY, null, null),
+                new Node(3L, 2L, "a1.txt", 10L, NodeType.FILE, "Public", "hash1"),
+                new Node(4L, 1L, "b", null, NodeType.DIRECTORY, null, null)));
+        directoryStructure.computeAllSizes();
+
+        directoryStructure.insertNode(new Node(5L, 4L, "b1.txt", 20L, NodeType.FILE, "Secret", "hash2"));
+        assertThat(directoryStructure.getNode(4L).getSize()).isEqualTo(20);
+        assertThat(directoryStructure.getNode(1L).getSize()).isEqualTo(30);
+
+        directoryStructure.resizeNode(3L, 15L);
+        assertThat(directoryStructure.getNode(2L).getSize()).isEqualTo(15);
+        assertThat(directoryStructure.getNode(1L).getSize()).isEqualTo(35);
+
+        directoryStructure.moveNode(2L, 4L);
+        assertThat(directoryStructure.getNode(4L).getSize()).isEqualTo(35);
+        assertThat(directoryStructure.getChildren(4L)).containsExactly(2L, 5L);
+        assertThat(directoryStructure.isDescendant(3L, 4L)).isTrue();
+
+        directoryStructure.removeNode(2L);
+        assertThat(directoryStructure.getNode(4L).getSize()).isEqualTo(20);
+        assertThat(directoryStructure.getNode(1L).getSize()).isEqualTo(20);
+        assertThat(directoryStructure.getNode(3L)).isNull();
+        assertThat(directoryStructure.getNodesByClassification("Public")).isEmpty();
+        assertThat(directoryStructure.getDirectoryIdByName("a")).isNull();
+        assertThat(directoryStructure.getNodeCount()).isEqualTo(3);
+        assertThat(directoryStructure.getTreeTraversal(1L)).containsExactly(1L, 4L, 5L);
+
+        assertThat(directoryStructure.computeSubtreeSize(1L)).isEqualTo(20);
+    }
+
+    @Test
+    @DisplayName("Should reject invalid mutations")
+    void shouldRejectInvalidMutations() {
+        directoryStructure.bulkLoad(List.of(
+                new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null),
+                new Node(2L, 1L, "a", null, NodeType.DIRECTORY, null, null),
+                new Node(3L, 2L, "a1.txt", 10L, NodeType.FILE, "Public", "hash1")));
+        directoryStructure.computeAllSizes();
+
+        assertThatThrownBy(() -> directoryStructure.moveNode(2L, 2L))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Cannot move node 2 into its own subtree");
+        assertThatThrownBy(() -> directoryStructure.moveNode(2L, 3L))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Only directories can have children");
+        assertThatThrownBy(() -> directoryStructure.resizeNode(2L, 5L))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Directory sizes are derived from their contents");
+        assertThatThrownBy(() -> directoryStructure.insertNode(
+                new Node(4L, 99L, "x.txt", 1L, NodeType.FILE, "Public", null)))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Node not found: 99");
+    }
+
+    @Test
+    @DisplayName("Should keep per-classification rollups current through mutations")
+    void shouldMaintainClassificationRollups() {
+        directoryStructure.bulkLoad(List.of(
+                new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null),
+                new Node(2L, 1L, "a", null, NodeType.DIRECTORY, null, null),
+                new Node(3L, 2L, "a1.txt", 10L, NodeType.FILE, "Public", "hash1"),
+                new Node(4L, 2L, "a2.txt", 20L, NodeType.FILE, "Secret", "hash2"),
+                new Node(5L, 1L, "b.txt", 5L, NodeType.FILE, "Public", "hash3")));
+        directoryStructure.computeAllSizes();
+
+        assertThat(directoryStructure.getRollupSize(1L, "Public")).isEqualTo(15);
+        assertThat(directoryStructure.getRollupFileCount(1L, "Public")).isEqualTo(2);
+        assertThat(directoryStructure.getRollupSize(2L, null)).isEqualTo(30);
+        assertThat(directoryStructure.getRollupSize(2L, "Missing")).isZero();
+
+        directoryStructure.insertNode(new Node(6L, 1L, "c", null, NodeType.DIRECTORY, null, null));
+        directoryStructure.insertNode(new Node(7L, 6L, "c1.txt", 7L, NodeType.FILE, "Secret", null));
+        directoryStructure.resizeNode(3L, 12L);
+        directoryStructure.moveNode(2L, 6L);
+        directoryStructure.removeNode(4L);
+
+        assertThat(directoryStructure.getRollupSize(6L, "Public")).isEqualTo(12);
+        assertThat(directoryStructure.getRollupSize(6L, "Secret")).isEqualTo(7);
+        assertThat(directoryStructure.getRollupFileCount(1L, null)).isEqualTo(3);
+        assertThat(directoryStructure.getRollupSize(1L, "Public")).isEqualTo(17);
+
+        DirectoryStructure rebuilt = directoryStructure.copy();
+        rebuilt.addNode(new Node(8L, 1L, "d.txt", 1L, NodeType.FILE, "Confidential", null));
+        rebuilt.computeAllSizes();
+        assertThat(rebuilt.getRollupSize(1L, "Secret")).isEqualTo(7);
+        assertThat(rebuilt.getRollupSize(1L, "Confidential")).isEqualTo(1);
+        assertThat(rebuilt.getRollupFileCount(6L, null)).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should read rebuilt rollups on the first query after appending rows")
+    void shouldReadRebuiltRollupsOnFirstQuery() {
+        directoryStructure.bulkLoad(List.of(
+                new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null),
+                new Node(2L, 1L, "a.txt", 10L, NodeType.FILE, "Public", null),
+                new Node(3L, 1L, "b.txt", 20L, NodeType.FILE, "Public", null)));
+        directoryStructure.computeAllSizes();
+        assertThat(directoryStructure.getRollupFileCount(1L, "Public")).isEqualTo(2);
+
+        directoryStructure.addNode(new Node(4L, 1L, "docs", null, NodeType.DIRECTORY, null, null));
+        directoryStructure.addNode(new Node(5L, 4L, "c.txt", 100L, NodeType.FILE, "Secret", null));
+
+        assertThat(directoryStructure.getRollupSize(4L, "Secret")).isEqualTo(100);
+        assertThat(directoryStructure.getRollupFileCount(1L, null)).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should index every node name with duplicates, prefixes and globs")
+    void shouldIndexNodeNames() {
+        directoryStructure.bulkLoad(List.of(
+                new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null),
+                new Node(2L, 1L, "src", null, NodeType.DIRECTORY, null, null),
+                new Node(3L, 1L, "lib", null, NodeType.DIRECTORY, null, null),
+                new Node(4L, 3L, "src", null, NodeType.DIRECTORY, null, null),
+                new Node(5L, 2L, "report-2024.txt", 10L, NodeType.FILE, "Public", null),
+                new Node(6L, 4L, "report-2025.csv", 20L, NodeType.FILE, "Secret", null),
+                new Node(7L, 4L, "annual-report.txt", 30L, NodeType.FILE, "Public", null),
+                new Node(8L, 1L, "src", 5L, NodeType.FILE, "Public", null)));
+
+        assertThat(directoryStructure.getDirectoryIdsByName("src")).containsExactly(2L, 4L);
+        assertThat(directoryStructure.getDirectoryIdByName("src")).isEqualTo(2L);
+        assertThat(ids(directoryStructure.getNodesByName("src"))).containsExactlyInAnyOrder(2L, 4L, 8L);
+        assertThat(ids(directoryStructure.getNodesByName("sr"))).isEmpty();
+        assertThat(ids(directoryStructure.getNodesByNamePrefix("report-"))).containsExactlyInAnyOrder(5L, 6L);
+        assertThat(ids(directoryStructure.getNodesByNameGlob("report-202?.*"))).containsExactlyInAnyOrder(5L, 6L);
+        assertThat(ids(directoryStructure.getNodesByNameGlob("*report*.txt"))).containsExactlyInAnyOrder(5L, 7L);
+        assertThat(ids(directoryStructure.getNodesByNameGlob("?i?"))).containsExactly(3L);
+        assertThatThrownBy(() -> directoryStructure.getNodesByNameGlob(""))
+                .isInstanceOf(ValidationException.class);
+
+        directoryStructure.removeNode(4L);
+        directoryStructure.insertNode(new Node(9L, 1L, "weekly-report.txt", 1L, NodeType.FILE, "Public", null));
+
+        assertThat(directoryStructure.getDirectoryIdsByName("src")).containsExactly(2L);
+        assertThat(ids(directoryStructure.getNodesByNameGlob("*report*.txt"))).containsExactlyInAnyOrder(5L, 9L);
+    }
+
+    @Test
+    @DisplayName("Should size lookups from the indexes and test single ordinals without materializing")
+    void shouldAnswerLookupsLazily() {
+        directoryStructure.bulkLoad(List.of(
+                new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null),
+                new Node(2L, 1L, "src", null, NodeType.DIRECTORY, null, null),
+                new Node(3L, 2L, "report-2024.txt", 10L, NodeType.FILE, "Public", "hash1"),
+                new Node(4L, 2L, "report-2025.csv", 20L, NodeType.FILE, "Secret", "hash1"),
+                new Node(5L, 1L, "src", 30L, NodeType.FILE, "Public", "hash2"),
+                new Node(6L, 1L, "notes.txt", 40L, NodeType.FILE, "Public", "hash1")));
+        directoryStructure.computeAllSizes();
+        int removed = directoryStructure.getOrdinal(6L);
+        directoryStructure.removeNode(6L);
+
+        NodeLookup byName = directoryStructure.lookupByName("src");
+        assertThat(byName.estimate()).isEqualTo(2);
+        assertThat(byName.isExact()).isTrue();
+        assertThat(byName.test(directoryStructure.getOrdinal(5L))).isTrue();
+        assertThat(byName.test(directoryStructure.getOrdinal(3L))).isFalse();
+        assertThat(ids(byName.materialize())).containsExactlyInAnyOrder(2L, 5L);
+
+        NodeLookup glob = directoryStructure.lookupByNameGlob("report-*.txt");
+        assertThat(glob.estimate()).isEqualTo(2);
+        assertThat(glob.isExact()).isFalse();
+        assertThat(glob.test(directoryStructure.getOrdinal(4L))).isFalse();
+        assertThat(ids(glob.materialize())).containsExactly(3L);
+
+        NodeLookup checksum = directoryStructure.lookupByChecksum("hash1");
+        assertThat(checksum.estimate()).isEqualTo(2);
+        assertThat(checksum.test(removed)).isFalse();
+        assertThat(directoryStructure.lookupByChecksum("missing").estimate()).isZero();
+
+        NodeLookup sizes = directoryStructure.lookupFilesBySizeRange(15, 30);
+        assertThat(sizes.estimate()).isEqualTo(2);
+        assertThat(sizes.test(directoryStructure.getOrdinal(2L))).isFalse();
+        assertThat(ids(sizes.materialize())).containsExactlyInAnyOrder(4L, 5L);
+        assertThat(directoryStructure.lookupFilesBySizeRange(30, 15).estimate()).isZero();
+    }
+
+    @Test
+    @DisplayName("Should patch the child, name, checksum and size indexes on remove and move")
+    void shouldPatchIndexesOnRemoveAndMove() {
+        directoryStructure.bulkLoad(List.of(
+                new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null),
+                new Node(2L, 1L, "a", null, NodeType.DIRECTORY, null, null),
+                new Node(3L, 2L, "report-a.txt", 10L, NodeType.FILE, "Public", "hash1"),
+                new Node(4L, 1L, "b", null, NodeType.DIRECTORY, null, null),
+                new Node(5L, 4L, "report-b.txt", 20L, NodeType.FILE, "Secret", "hash1"),
+                new Node(6L, 4L, "zeta.txt", 30L, NodeType.FILE, "Public", "hash2"),
+                new Node(7L, 1L, "c", null, NodeType.DIRECTORY, null, null),
+                new Node(8L, 7L, "final-report.txt", 40L, NodeType.FILE, "Public", "hash1")));
+        directoryStructure.computeAllSizes();
+        directoryStructure.freeze();
+        DirectoryStructure copy = directoryStructure.copy();
+        assertThat(copy.getNodesByNameGlob("*report*")).isNotNull();
+
+        copy.removeNode(5L);
+        copy.moveNode(8L, 2L);
+
+        assertThat(copy.getChildren(2L)).containsExactly(8L, 3L);
+        assertThat(copy.getChildren(4L)).containsExactly(6L);
+        assertThat(copy.getChildren(7L)).isEmpty();
+        assertThat(copy.getTreeTraversal(1L)).containsExactly(1L, 2L, 8L, 3L, 4L, 6L, 7L);
+        assertThat(copy.getDepth(8L)).isEqualTo(2);
+        assertThat(copy.getNodesByOrdinals(copy.getNodesByNameGlob("*report*")))
+                .extracting(Node::getId).containsExactlyInAnyOrder(3L, 8L);
+        assertThat(copy.getNodesByOrdinals(copy.getNodesByNamePrefix("report-")))
+                .extracting(Node::getId).containsExactly(3L);
+        assertThat(copy.getNodesByOrdinals(copy.getNodesByChecksum("hash1")))
+                .extracting(Node::getId).containsExactlyInAnyOrder(3L, 8L);
+        assertThat(copy.getDuplicateGroups(5)).singleElement()
+                .satisfies(group -> assertThat(group.wastedBytes()).isEqualTo(10));
+        assertThat(copy.countFilesBySizeRange(0, 100)).isEqualTo(3);
+        assertThat(copy.getLargestDirectories(1L, 3)).extracting(Node::getId).containsExactly(2L, 4L, 7L);
+
+        assertThat(directoryStructure.getChildren(4L)).containsExactly(5L, 6L);
+        assertThat(directoryStructure.getTreeTraversal(1L)).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L);
+        assertThat(directoryStructure.countFilesBySizeRange(0, 100)).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should not revive removed nodes in the classification index on a later bulk load")
+    void shouldKeepRemovedNodesOutOfClassificationsAfterBulkLoad() {
+        directoryStructure.bulkLoad(List.of(
+                new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null),
+                new Node(2L, 1L, "a.txt", 10L, NodeType.FILE, "Public", null),
+                new Node(3L, 1L, "b.txt", 20L, NodeType.FILE, "Public", null)));
+        directoryStructure.removeNode(2L);
+        directoryStructure.bulkLoad(List.of(new Node(4L, 1L, "c.txt", 30L, NodeType.FILE, "Public", null)));
+
+        assertThat(directoryStructure.getClassificationBits("Public").cardinality()).isEqualTo(2);
+        assertThat(directoryStructure.getNodesByClassification("Public")).containsExactlyInAnyOrder(3L, 4L);
+        assertThat(directoryStructure.getNodesByOrdinals(directoryStructure.getClassificationBits("Public")))
+                .extracting(Node::getName).containsExactlyInAnyOrder("b.txt", "c.txt");
+    }
+
+    @Test
+    @DisplayName("Should rank the largest files of a small subtree from its pre-order range")
+    void shouldRankLargestFilesInSmallSubtree() {
+        directoryStructure.addNode(new Node(1L, null, "root", null, NodeType.DIRECTORY, null, null));
+        directoryStructure.addNode(new Node(2L, 1L, "small", null, NodeType.DIRECTORY, null, null));
+        for (long id = 10; id < 210; id++) {
+            directoryStructure.addNode(new Node(id, 1L, "bulk" + id, id, NodeType.FILE, "Public", null));
+        }
+        directoryStructure.addNode(new Node(3L, 2L, "a.txt", 5L, NodeType.FILE, "Public", null));
+        directoryStructure.addNode(new Node(4L, 2L, "b.txt", 7L, NodeType.FILE, "Public", null));
+        directoryStructure.computeAllSizes();
+
+        assertThat(directoryStructure.getLargestFiles(2L, 5)).extracting(Node::getId).containsExactly(4L, 3L);
+        assertThat(directoryStructure.getLargestFiles(1L, 2)).extracting(Node::getId).containsExactly(209L, 208L);
+        assertThat(directoryStructure.getLargestDirectories(1L, 2)).extracting(Node::getId).containsExactly(2L);
+        assertThat(directoryStructure.countFilesBySizeRange(5, 10)).isEqualTo(3);
+    }
+
+    private Set<Long> ids(BitSet ordinals) {
+        return directoryStructure.getNodesByOrdinals(ordinals).stream().map(Node::getId)
+                .collect(Collectors.toSet());
+    }
+}
@@ -2,14 +2,50 @@ package com.directorystructure.service;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-
+import org.junit.jupiter.api.io.TempDir;
+
+import com.directorystructure.exceptions.DataParsingException;
+import com.directorystructure.exceptions.ValidationException;
+import com.directorystructure.model.DirectoryStructure;
+import com.directorystructure.model.DuplicateGroup;
+import com.directorystructure.model.Node;
+import com.directorystructure.model.NodeType;
+import com.directorystructure.model.SearchExpression;
+import static com.directorystructure.model.SearchExpression.and;
+import static com.directorystructure.model.SearchExpression.filter;
+import static com.directorystructure.model.SearchExpression.not;
+import static com.directorystructure.model.SearchExpression.or;
+import com.directorystructure.model.SizeAggregate;
 import com.directorystructure.model.enums.FilterType;
+import com.directorystructure.model.enums.GroupBy;
 
 @DisplayName("FileSystem Integration Tests")
 class FileSystemTest {
@@ -192,4 +228,561 @@ class FileSystemTest {
         assertThat(totalSize).isEqualTo(210);
     }
 
-}
\ No newline at end of file
+    @Test
+    @DisplayName("Should build the same tree and search results when loading a file in parallel")
+    void shouldLoadFileInParallel(@TempDir Path tempDir) throws IOException {
+        Path csv = tempDir.resolve("directory-structure.csv");
+        try (InputStream is = getClass().getClassLoader().getResourceAsStream("directory-structure.csv")) {
+            Files.write(csv, is.readAllBytes());
+        }
+
+        FileSystem parallelFileSystem = new FileSystem();
+        parallelFileSystem.loadFromCsvParallel(csv);
+
+        assertThat(parallelFileSystem.buildTree()).isEqualTo(fileSystem.buildTree());
+        SearchCriteria criteria = new SearchCriteria()
+                .where(FilterType.DIRECTORY_NAME, "folder11")
+                .and(FilterType.CLASSIFICATION, "Public", true);
+        assertThat(parallelFileSystem.search(criteria)).isEqualTo(fileSystem.search(criteria));
+    }
+
+    @Test
+    @DisplayName("Should publish updates as a new version and leave the previous snapshot untouched")
+    void shouldPublishUpdatesAsNewSnapshot() {
+        DirectoryStructure before = fileSystem.getDirectoryStructure();
+        long version = fileSystem.getVersion();
+
+        fileSystem.update(structure -> structure.resizeNode(5L, 150L));
+
+        assertThat(fileSystem.getVersion()).isEqualTo(version + 1);
+        assertThat(fileSystem.search(new SearchCriteria().where(FilterType.CLASSIFICATION, "Public").size()))
+                .isEqualTo("220");
+        assertThat(before.getNode(5L).getSize()).isEqualTo(50);
+        assertThat(before.getNode(2L).getSize()).isEqualTo(400);
+        assertThatThrownBy(() -> before.resizeNode(5L, 1L)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("Should keep sizes incrementally on update instead of recomputing them")
+    void shouldNotRecomputeSizesOnUpdate(@TempDir Path tempDir) throws IOException {
+        List<Long> largestFiles = fileSystem.findLargestFiles(null, 3).stream().map(Node::getId).toList();
+        Path recordingFile = tempDir.resolve("update.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.directorystructure.ComputeSizes").withoutThreshold();
+            recording.start();
+            fileSystem.update(structure -> structure.moveNode(9L, 3L));
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        assertThat(RecordingFile.readAllEvents(recordingFile))
+                .noneMatch(event -> event.getEventType().getName().equals("com.directorystructure.ComputeSizes"));
+        DirectoryStructure structure = fileSystem.getDirectoryStructure();
+        assertThat(structure.getNode(2L).getSize()).isEqualTo(400);
+        assertThat(structure.getNode(11L).getSize()).isEqualTo(360);
+        assertThat(structure.getNode(3L).getSize()).isEqualTo(280);
+        assertThat(structure.getNode(10L).getSize()).isEqualTo(80);
+        assertThat(fileSystem.findLargestFiles(null, 3)).extracting(Node::getId).isEqualTo(largestFiles);
+        assertThat(fileSystem.findLargestDirectories(null, 3)).extracting(Node::getId).containsExactly(11L, 3L, 10L);
+    }
+
+    @Test
+    @DisplayName("Should recompute sizes when an update appends rows with addNode or bulkLoad")
+    void shouldRecomputeSizesAfterAppendingRowsInUpdate() {
+        fileSystem.update(structure -> structure.addNode(
+                new Node(12L, 10L, "file12", 1000L, NodeType.FILE, "Public", null)));
+
+        DirectoryStructure structure = fileSystem.getDirectoryStructure();
+        assertThat(structure.getNode(10L).getSize()).isEqualTo(1170);
+        assertThat(structure.getNode(11L).getSize()).isEqualTo(1360);
+        assertThat(structure.getNode(2L).getSize()).isEqualTo(1400);
+        assertThat(fileSystem.search(new SearchCriteria().where(FilterType.DIRECTORY_NAME, "folder2").size()))
+                .isEqualTo("1400");
+
+        fileSystem.update(next -> next.bulkLoad(List.of(
+                new Node(13L, 2L, "folder13", null, NodeType.DIRECTORY, null, null),
+                new Node(14L, 13L, "file14", 5L, NodeType.FILE, "Secret", null))));
+
+        assertThat(fileSystem.getDirectoryStructure().getNode(13L).getSize()).isEqualTo(5);
+        assertThat(fileSystem.getDirectoryStructure().getNode(2L).getSize()).isEqualTo(1405);
+        assertThat(fileSystem.search(new SearchCriteria().where(FilterType.CLASSIFICATION, "Secret").size()))
+                .isEqualTo("195");
+    }
+
+    @Test
+    @DisplayName("Should serve consistent search results while reloads and updates run")
+    void shouldServeConsistentResultsDuringReload() throws Exception {
+        SearchCriteria query = new SearchCriteria().where(FilterType.DIRECTORY_NAME, "folder11").size();
+        ExecutorService readers = Executors.newFixedThreadPool(4);
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            futures.add(readers.submit(() -> {
+                while (running.get()) {
+                    assertThat(fileSystem.search(query)).isIn("360", "361");
+                }
+            }));
+        }
+
+        for (int i = 0; i < 50; i++) {
+            fileSystem.loadFromCsv("directory-structure.csv");
+            fileSystem.update(structure -> structure.resizeNode(1L, 11L));
+        }
+        running.set(false);
+        readers.shutdown();
+        assertThat(readers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep left-to-right semantics when the planner reorders runs of the same operator")
+    void shouldPlanMixedOperatorRuns() {
+        String result = fileSystem.search(
+                new SearchCriteria()
+                        .where(FilterType.DIRECTORY_NAME, "folder3")
+                        .or(FilterType.DIRECTORY_NAME, "folder10")
+                        .and(FilterType.CLASSIFICATION, "Secret", true)
+                        .and(FilterType.DIRECTORY_NAME, "folder2"));
+
+        String expected = String.join(System.lineSeparator(),
+                "name = file5, type = File, size = 50, classification = Public, checksum = 42",
+                "name = file7, type = File, size = 70, classification = Public, checksum = 42",
+                "name = file9, type = File, size = 90, classification = Top secret, checksum = 42");
+
+        assertThat(result).isEqualToIgnoringNewLines(expected);
+        assertThat(fileSystem.search(new SearchCriteria()
+                .where(FilterType.DIRECTORY_NAME, "folder2")
+                .and(FilterType.CLASSIFICATION, "Missing")
+                .or(FilterType.CLASSIFICATION, "Top secret")))
+                .isEqualTo("name = file9, type = File, size = 90, classification = Top secret, checksum = 42");
+    }
+
+    @Test
+    @DisplayName("Should serve equivalent criteria from the cache until a new version is published")
+    void shouldCacheResultsPerVersion() {
+        SearchCriteria secretOrTopSecret = new SearchCriteria()
+                .where(FilterType.CLASSIFICATION, "Secret")
+                .or(FilterType.CLASSIFICATION, "Top secret");
+        SearchCriteria topSecretOrSecret = new SearchCriteria()
+                .where(FilterType.CLASSIFICATION, "Top secret")
+                .or(FilterType.CLASSIFICATION, "Secret");
+
+        String first = fileSystem.search(secretOrTopSecret);
+        assertThat(fileSystem.search(topSecretOrSecret)).isEqualTo(first);
+        assertThat(fileSystem.getCacheStats().hitCount()).isEqualTo(1);
+        assertThat(fileSystem.getCacheStats().missCount()).isEqualTo(1);
+
+        fileSystem.update(structure -> structure.resizeNode(4L, 41L));
+
+        assertThat(fileSystem.search(secretOrTopSecret)).contains("size = 41");
+        assertThat(fileSystem.getCacheStats().missCount()).isEqualTo(2);
+        assertThat(QueryCache.canonicalize(secretOrTopSecret.size()))
+                .isNotEqualTo(QueryCache.canonicalize(topSecretOrSecret));
+    }
+
+    @Test
+    @DisplayName("Should evaluate grouped expressions with NOT on sub-expressions")
+    void shouldEvaluateGroupedExpressions() {
+        SearchExpression folders = or(filter(FilterType.DIRECTORY_NAME, "folder3"),
+                filter(FilterType.DIRECTORY_NAME, "folder10"));
+        SearchExpression publicOrTopSecret = or(filter(FilterType.CLASSIFICATION, "Public"),
+                filter(FilterType.CLASSIFICATION, "Top secret"));
+
+        String expected = String.join(System.lineSeparator(),
+                "name = file1, type = File, size = 10, classification = Secret, checksum = 42",
+                "name = file6, type = File, size = 60, classification = Secret, checksum = 42",
+                "name = file8, type = File, size = 80, classification = Secret, checksum = 42");
+
+        assertThat(fileSystem.search(new SearchCriteria().where(and(folders, not(publicOrTopSecret)))))
+                .isEqualToIgnoringNewLines(expected);
+        assertThat(fileSystem.search(new SearchCriteria()
+                .where(FilterType.DIRECTORY_NAME, "folder2")
+                .and(not(or(filter(FilterType.DIRECTORY_NAME, "folder3"), filter(FilterType.CLASSIFICATION, "Secret"))))))
+                .isEqualTo("name = file9, type = File, size = 90, classification = Top secret, checksum = 42");
+        assertThat(fileSystem.search(new SearchCriteria().where(not(not(folders))).size())).isEqualTo("360");
+    }
+
+    @Test
+    @DisplayName("Should bound the cache by the combined length of the cached results")
+    void shouldBoundCacheByResultLength() {
+        FileSystem bounded = new FileSystem(1024, 100);
+        bounded.loadFromCsv("directory-structure.csv");
+        SearchCriteria listing = new SearchCriteria().where(FilterType.NAME_GLOB, "file*");
+        SearchCriteria size = new SearchCriteria().where(FilterType.CLASSIFICATION, "Secret").size();
+
+        bounded.search(listing);
+        bounded.search(listing);
+        bounded.search(size);
+        bounded.search(size);
+
+        assertThat(bounded.search(listing).length()).isGreaterThan(100);
+        assertThat(bounded.getCacheStats().hitCount()).isEqualTo(1);
+        assertThatThrownBy(() -> new FileSystem(16, -1))
+                .isInstanceOf(ValidationException.class)
+                .hasMessage("Cache length limit cannot be negative");
+    }
+
+    @Test
+    @DisplayName("Should share a cache key between reordered and regrouped equivalent expressions")
+    void shouldCanonicalizeExpressions() {
+        SearchExpression secret = filter(FilterType.CLASSIFICATION, "Secret");
+        SearchExpression folder3 = filter(FilterType.DIRECTORY_NAME, "folder3");
+        SearchExpression folder10 = filter(FilterType.DIRECTORY_NAME, "folder10");
+
+        assertThat(QueryCache.canonicalize(new SearchCriteria().where(or(folder3, folder10)).and(secret)))
+                .isEqualTo(QueryCache.canonicalize(new SearchCriteria().where(secret).and(or(folder10, folder3))));
+        assertThat(QueryCache.canonicalize(new SearchCriteria().where(and(and(secret, folder3), folder10))))
+                .isEqualTo(QueryCache.canonicalize(new SearchCriteria().where(and(folder10, folder3, secret))));
+        assertThat(QueryCache.canonicalize(new SearchCriteria().where(not(or(folder3, secret)))))
+                .isNotEqualTo(QueryCache.canonicalize(new SearchCriteria().where(or(not(folder3), secret))));
+    }
+
+    @Test
+    @DisplayName("Should page through results in name order and resume a cursor after an update")
+    void shouldPageResultsWithResumableCursor() {
+        SearchCriteria secret = new SearchCriteria().where(FilterType.CLASSIFICATION, "Secret");
+
+        ResultPage first = fileSystem.searchPage(secret, 0, 2);
+        assertThat(first.nodes()).extracting(Node::getName).containsExactly("file1", "file4");
+        assertThat(first.hasNext()).isTrue();
+
+        fileSystem.update(structure -> structure.removeNode(4L));
+
+        ResultPage second = fileSystem.searchPage(secret, first.next(), 2);
+        assertThat(second.nodes()).extracting(Node::getName).containsExactly("file6", "file8");
+        assertThat(second.hasNext()).isFalse();
+        assertThat(fileSystem.searchPage(secret, 2, 10).nodes()).extracting(Node::getName).containsExactly("file8");
+        assertThat(fileSystem.searchPage(secret, 5, 10).nodes()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should order sparse results the same way as dense ones")
+    void shouldOrderSparseResults() {
+        fileSystem.update(structure -> {
+            for (long id = 100; id < 1100; id++) {
+                String classification = id % 250 == 0 ? "Confidential" : "Public";
+                structure.insertNode(new Node(id, 3L, "bulk" + (2000 - id), 1L, NodeType.FILE, classification, null));
+            }
+        });
+
+        ResultCursor cursor = fileSystem.openCursor(
+                new SearchCriteria().where(FilterType.CLASSIFICATION, "Confidential"));
+        List<String> names = new ArrayList<>();
+        cursor.forEachRemaining(node -> names.add(node.getName()));
+
+        assertThat(names).containsExactly("bulk1000", "bulk1250", "bulk1500", "bulk1750");
+        assertThat(fileSystem.searchPage(new SearchCriteria().where(FilterType.CLASSIFICATION, "Confidential"),
+                new ResultPage.Cursor("bulk1250", 750L), 1).nodes())
+                .extracting(Node::getName).containsExactly("bulk1500");
+    }
+
+    @Test
+    @DisplayName("Should aggregate file sizes per classification, directory and depth in one call")
+    void shouldAggregateGroupedSizes() {
+        List<SizeAggregate> byClassification = fileSystem.aggregate(new SearchCriteria(), GroupBy.CLASSIFICATION);
+        assertThat(byClassification).extracting(SizeAggregate::group).containsExactly("Public", "Secret", "Top secret");
+        SizeAggregate secret = byClassification.get(1);
+        assertThat(secret.count()).isEqualTo(4);
+        assertThat(secret.sum()).isEqualTo(190);
+        assertThat(secret.min()).isEqualTo(10);
+        assertThat(secret.max()).isEqualTo(80);
+        assertThat(secret.histogram()[SizeAggregate.bucketOf(10)]).isEqualTo(1);
+        assertThat(secret.histogram()[SizeAggregate.bucketOf(40)]).isEqualTo(2);
+        secret.histogram()[0] = 99;
+        assertThat(secret.histogram()[0]).isZero();
+        assertThat(fileSystem.aggregate(new SearchCriteria(), GroupBy.CLASSIFICATION)).isEqualTo(byClassification);
+        assertThat(secret.toString()).contains("histogram=[0, 0, 0, 0, 1,");
+
+        assertThat(fileSystem.aggregate(new SearchCriteria(), GroupBy.DEPTH))
+                .extracting(SizeAggregate::group, SizeAggregate::count, SizeAggregate::sum)
+                .containsExactly(tuple("1", 1L, 40L), tuple("3", 6L, 360L));
+        assertThat(fileSystem.aggregate(new SearchCriteria().where(FilterType.CLASSIFICATION, "Secret"), GroupBy.DIRECTORY))
+                .extracting(SizeAggregate::group, SizeAggregate::sum)
+                .containsExactly(tuple("2", 40L), tuple("3", 70L), tuple("10", 80L));
+    }
+
+    @Test
+    @DisplayName("Should answer directory and classification size queries from rollups")
+    void shouldSumSizesFromRollups() {
+        assertThat(fileSystem.search(new SearchCriteria()
+                .where(FilterType.DIRECTORY_NAME, "folder11")
+                .and(FilterType.CLASSIFICATION, "Public")
+                .size())).isEqualTo("120");
+        assertThat(fileSystem.search(new SearchCriteria()
+                .where(FilterType.CLASSIFICATION, "Public", true)
+                .and(FilterType.DIRECTORY_NAME, "folder11")
+                .size())).isEqualTo("240");
+        assertThat(fileSystem.search(new SearchCriteria().where(FilterType.CLASSIFICATION, "Secret").size()))
+                .isEqualTo("190");
+        assertThat(fileSystem.search(new SearchCriteria().where(FilterType.DIRECTORY_NAME, "missing").size()))
+                .isEqualTo("0");
+
+        fileSystem.update(structure -> structure.resizeNode(5L, 55L));
+
+        assertThat(fileSystem.search(new SearchCriteria()
+                .where(FilterType.DIRECTORY_NAME, "folder3")
+                .and(FilterType.CLASSIFICATION, "Public")
+                .size())).isEqualTo("125");
+    }
+
+    @Test
+    @DisplayName("Should filter by file names and search every directory sharing a name")
+    void shouldFilterByNamePatterns() {
+        fileSystem.update(structure -> {
+            structure.insertNode(new Node(20L, 2L, "folder3", null, NodeType.DIRECTORY, null, null));
+            structure.insertNode(new Node(21L, 20L, "file21", 5L, NodeType.FILE, "Public", "7"));
+        });
+
+        assertThat(fileSystem.search(new SearchCriteria()
+                .where(FilterType.DIRECTORY_NAME, "folder3")
+                .and(FilterType.CLASSIFICATION, "Public")
+                .size())).isEqualTo("125");
+        assertThat(fileSystem.search(new SearchCriteria().where(FilterType.NAME, "file21")))
+                .isEqualTo("name = file21, type = File, size = 5, classification = Public, checksum = 7");
+        assertThat(fileSystem.search(new SearchCriteria()
+                .where(FilterType.NAME_GLOB, "file?")
+                .and(FilterType.CLASSIFICATION, "Secret")))
+                .contains("name = file1,", "name = file4,", "name = file6,", "name = file8,")
+                .doesNotContain("file9", "file21");
+        assertThat(fileSystem.search(new SearchCriteria()
+                .where(FilterType.NAME_PREFIX, "file2")
+                .or(FilterType.NAME_GLOB, "*e9")
+                .size())).isEqualTo("95");
+    }
+
+    @Test
+    @DisplayName("Should resolve full paths, filter by path and print paths")
+    void shouldResolveFullPaths() throws IOException {
+        assertThat(fileSystem.findByPath("/folder2/folder11/folder3").getId()).isEqualTo(3L);
+        assertThat(fileSystem.findByPath("/folder2/file4").getId()).isEqualTo(4L);
+        assertThat(fileSystem.findByPath("/folder2").getId()).isEqualTo(2L);
+        assertThat(fileSystem.findByPath("/folder2/folder3")).isNull();
+        assertThat(fileSystem.findByPath("/folder2//file4")).isNull();
+        assertThatThrownBy(() -> fileSystem.findByPath("folder2")).isInstanceOf(ValidationException.class);
+        assertThat(fileSystem.getDirectoryStructure().getPath(9L)).isEqualTo("/folder2/folder11/folder10/file9");
+
+        assertThat(fileSystem.search(new SearchCriteria()
+                .where(FilterType.PATH, "/folder2/folder11/folder3")
+                .and(FilterType.CLASSIFICATION, "Public")
+                .size())).isEqualTo("120");
+        assertThat(fileSystem.search(new SearchCriteria()
+                .where(FilterType.PATH, "/folder2/folder11/folder10/file8")
+                .size())).isEqualTo("80");
+        assertThat(fileSystem.searchPaths(new SearchCriteria()
+                .where(FilterType.PATH, "/folder2/folder11/folder10")))
+                .isEqualTo("/folder2/folder11/folder10/file8\n/folder2/folder11/folder10/file9");
+
+        StringWriter paths = new StringWriter();
+        fileSystem.writePaths(paths);
+        assertThat(paths.toString()).startsWith("/folder2\n/folder2/file4\n/folder2/folder11\n")
+                .contains("/folder2/folder11/folder3/file7\n");
+    }
+
+    @Test
+    @DisplayName("Should filter by checksum and rank duplicate groups by wasted bytes")
+    void shouldFindDuplicateFiles() {
+        fileSystem.update(structure -> {
+            structure.insertNode(new Node(20L, 2L, "copy-a", 5L, NodeType.FILE, "Public", "abc"));
+            structure.insertNode(new Node(21L, 3L, "copy-b", 5L, NodeType.FILE, "Secret", "abc"));
+            structure.insertNode(new Node(22L, 3L, "unique", 1L, NodeType.FILE, "Public", "xyz"));
+        });
+
+        List<DuplicateGroup> groups = fileSystem.findDuplicates(10);
+        assertThat(groups).extracting(DuplicateGroup::checksum).containsExactly("42", "abc");
+        assertThat(groups.get(0).fileIds()).containsExactly(1L, 4L, 5L, 6L, 7L, 8L, 9L);
+        assertThat(groups.get(0).totalBytes()).isEqualTo(400);
+        assertThat(groups.get(0).wastedBytes()).isEqualTo(310);
+        assertThat(groups.get(1).fileIds()).containsExactly(20L, 21L);
+        assertThat(groups.get(1).wastedBytes()).isEqualTo(5);
+        assertThat(fileSystem.findDuplicates(1)).hasSize(1);
+        assertThatThrownBy(() -> fileSystem.findDuplicates(0)).isInstanceOf(ValidationException.class);
+
+        assertThat(fileSystem.search(new SearchCriteria().where(FilterType.CHECKSUM, "abc").size()))
+                .isEqualTo("10");
+        assertThat(fileSystem.search(new SearchCriteria()
+                .where(FilterType.CHECKSUM, "42", true)
+                .and(FilterType.CLASSIFICATION, "Public")))
+                .startsWith("name = copy-a,")
+                .endsWith("name = unique, type = File, size = 1, classification = Public, checksum = xyz");
+    }
+
+    @Test
+    @DisplayName("Should filter by size range and list the largest files and directories")
+    void shouldQueryBySize() {
+        assertThat(fileSystem.search(new SearchCriteria().where(FilterType.SIZE_RANGE, "50..80").size()))
+                .isEqualTo("260");
+        assertThat(fileSystem.search(new SearchCriteria().where(FilterType.SIZE_RANGE, "..40").size()))
+                .isEqualTo("50");
+        assertThat(fileSystem.search(new SearchCriteria()
+                .where(FilterType.SIZE_RANGE, "85..")
+                .or(FilterType.SIZE_RANGE, "20..60", true)
+                .size())).isEqualTo("250");
+        assertThat(fileSystem.getDirectoryStructure().countFilesBySizeRange(50, 80)).isEqualTo(4);
+        assertThatThrownBy(() -> fileSystem.search(new SearchCriteria().where(FilterType.SIZE_RANGE, "big")))
+                .isInstanceOf(ValidationException.class);
+
+        assertThat(fileSystem.findLargestFiles(null, 3)).extracting(Node::getName)
+                .containsExactly("file9", "file8", "file7");
+        assertThat(fileSystem.findLargestFiles("/folder2/folder11/folder3", 2)).extracting(Node::getName)
+                .containsExactly("file7", "file6");
+        assertThat(fileSystem.findLargestDirectories(null, 5)).extracting(Node::getName)
+                .containsExactly("folder11", "folder3", "folder10");
+        assertThat(fileSystem.findLargestFiles("/missing", 3)).isEmpty();
+        assertThatThrownBy(() -> fileSystem.findLargestFiles(null, 0)).isInstanceOf(ValidationException.class);
+
+        fileSystem.update(structure -> structure.resizeNode(1L, 1000L));
+        assertThat(fileSystem.findLargestDirectories(null, 1)).extracting(Node::getSize).containsExactly(1350L);
+    }
+
+    @Test
+    @DisplayName("Should expose parser, structure and per-filter search metrics as MBeans")
+    @SuppressWarnings("unchecked")
+    void shouldExposeMetricsThroughJmx() throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        fileSystem.registerMBeans("metrics-test");
+        try {
+            fileSystem.search(new SearchCriteria()
+                    .where(FilterType.DIRECTORY_NAME, "folder3")
+                    .and(FilterType.CLASSIFICATION, "Public", true));
+            fileSystem.search(new SearchCriteria().where(FilterType.NAME_GLOB, "file*"));
+
+            ObjectName search = new ObjectName("com.directorystructure:type=Search,name=\"metrics-test\"");
+            assertThat((Long) server.getAttribute(search, "QueryCount")).isEqualTo(2);
+            TabularData queries = (TabularData) server.getAttribute(search, "QueriesByFilterType");
+            assertThat(queries.get(new Object[] {"CLASSIFICATION"}).get("value")).isEqualTo(1L);
+            assertThat(queries.get(new Object[] {"NAME_GLOB"}).get("value")).isEqualTo(1L);
+            TabularData negated = (TabularData) server.getAttribute(search, "NegatedFiltersByFilterType");
+            assertThat(negated.get(new Object[] {"CLASSIFICATION"}).get("value")).isEqualTo(1L);
+            assertThat(fileSystem.getSearchMetrics().getResultSizeHistogram(FilterType.NAME_GLOB).getMax())
+                    .isEqualTo(7);
+
+            ObjectName structure = new ObjectName("com.directorystructure:type=Structure,name=\"metrics-test\"");
+            assertThat((Integer) server.getAttribute(structure, "NodeCount")).isEqualTo(11);
+            assertThat((Integer) server.getAttribute(structure, "DirectoryCount")).isEqualTo(4);
+            assertThat((Long) server.getAttribute(structure, "IndexBytes")).isPositive();
+
+            ObjectName parser = new ObjectName("com.directorystructure:type=CsvParser");
+            assertThat((Long) server.getAttribute(parser, "RowsParsed")).isGreaterThanOrEqualTo(11);
+        } finally {
+            fileSystem.unregisterMBeans();
+        }
+        assertThat(server.isRegistered(new ObjectName("com.directorystructure:type=Search,name=\"metrics-test\"")))
+                .isFalse();
+    }
+
+    @Test
+    @DisplayName("Should record flight recorder events for each pipeline phase")
+    void shouldRecordFlightRecorderEvents(@TempDir Path tempDir) throws IOException {
+        Path recordingFile = tempDir.resolve("pipeline.jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : List.of("CsvParse", "IndexBuild", "ComputeSizes", "Search", "Format")) {
+                recording.enable("com.directorystructure." + event).withoutThreshold();
+            }
+            recording.start();
+            fileSystem.loadFromCsv("directory-structure.csv");
+            fileSystem.search(new SearchCriteria()
+                    .where(FilterType.NAME_GLOB, "file*")
+                    .and(FilterType.CLASSIFICATION, "Public", true));
+            fileSystem.buildTree();
+            recording.stop();
+            recording.dump(recordingFile);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile);
+        assertThat(events).extracting(event -> event.getEventType().getName()).contains(
+                "com.directorystructure.CsvParse", "com.directorystructure.IndexBuild",
+                "com.directorystructure.ComputeSizes", "com.directorystructure.Search",
+                "com.directorystructure.Format");
+
+        RecordedEvent parse = first(events, "com.directorystructure.CsvParse");
+        assertThat(parse.getLong("rows")).isEqualTo(11);
+        assertThat(parse.getString("source")).isEqualTo("directory-structure.csv");
+        assertThat(first(events, "com.directorystructure.IndexBuild").getString("phase")).isEqualTo("bulkLoad");
+        assertThat(first(events, "com.directorystructure.ComputeSizes").getLong("nodes")).isEqualTo(11);
+
+        RecordedEvent search = first(events, "com.directorystructure.Search");
+        assertThat(search.getString("filterTypes")).isEqualTo("CLASSIFICATION,NAME_GLOB");
+        assertThat(search.getInt("negatedFilters")).isEqualTo(1);
+        assertThat(search.getBoolean("rollup")).isFalse();
+
+        assertThat(events).filteredOn(event -> event.getEventType().getName().equals("com.directorystructure.Format"))
+                .extracting(event -> event.getString("output"), event -> event.getLong("lines"))
+                .contains(tuple("tree", 11L));
+    }
+
+    private static RecordedEvent first(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).findFirst().orElseThrow();
+    }
+
+    @Test
+    @DisplayName("Should stream the same tree to a writer as buildTree returns")
+    void shouldStreamTreeToWriter() throws IOException {
+        StringWriter writer = new StringWriter();
+        fileSystem.writeTree(writer);
+
+        assertThat(writer.toString()).isEqualTo(fileSystem.buildTree());
+        assertThat(writer.toString()).startsWith("name = folder2, type = Directory, size = 400\n"
+                + " name = file4, type = File, size = 40, classification = Secret, checksum = 42\n");
+
+        StringWriter empty = new StringWriter();
+        new FileSystem().writeTree(empty);
+        assertThat(empty.toString()).isEqualTo("No file system structure found");
+    }
+
+    @Test
+    @DisplayName("Should reopen a saved binary snapshot with identical tree, searches and rollups")
+    void shouldRoundTripBinarySnapshot(@TempDir Path tempDir) throws IOException {
+        fileSystem.update(structure -> structure.removeNode(4L));
+        Path snapshot = tempDir.resolve("structure.snapshot");
+        fileSystem.saveSnapshot(snapshot);
+
+        FileSystem reopened = new FileSystem();
+        reopened.openSnapshot(snapshot);
+
+        assertThat(reopened.buildTree()).isEqualTo(fileSystem.buildTree());
+        SearchCriteria query = new SearchCriteria()
+                .where(FilterType.DIRECTORY_NAME, "folder3")
+                .or(FilterType.CLASSIFICATION, "Top secret");
+        assertThat(reopened.search(query)).isEqualTo(fileSystem.search(query));
+        assertThat(reopened.getDirectoryStructure().getRollupSize(2L, "Secret")).isEqualTo(150);
+        assertThat(reopened.searchPage(new SearchCriteria().where(FilterType.CLASSIFICATION, "Secret"), 0, 1).nodes())
+                .extracting(Node::getName).containsExactly("file1");
+
+        reopened.update(structure -> structure.insertNode(
+                new Node(12L, 10L, "file12", 5L, NodeType.FILE, "Secret", null)));
+        assertThat(reopened.search(new SearchCriteria().where(FilterType.DIRECTORY_NAME, "folder10").size()))
+                .isEqualTo("175");
+
+        reopened.saveSnapshot(snapshot);
+        fileSystem.openSnapshot(snapshot);
+        assertThat(fileSystem.findByPath("/folder2/folder11/folder10/file12")).isNotNull();
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).containsExactly(snapshot);
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject files that are not complete snapshots")
+    void shouldRejectInvalidSnapshots(@TempDir Path tempDir) throws IOException {
+        Path csv = tempDir.resolve("structure.csv");
+        Files.writeString(csv, "1;;root;directory;;;;");
+        assertThatThrownBy(() -> fileSystem.openSnapshot(csv))
+                .isInstanceOf(DataParsingException.class)
+                .hasMessageStartingWith("Not a directory structure snapshot");
+
+        Path snapshot = tempDir.resolve("structure.snapshot");
+        fileSystem.saveSnapshot(snapshot);
+        Path truncated = tempDir.resolve("truncated.snapshot");
+        byte[] bytes = Files.readAllBytes(snapshot);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThatThrownBy(() -> fileSystem.openSnapshot(truncated))
+                .isInstanceOf(DataParsingException.class)
+                .hasMessageStartingWith("Snapshot file is truncated");
+        assertThatThrownBy(() -> fileSystem.openSnapshot(tempDir.resolve("missing.snapshot")))
+                .isInstanceOf(DataParsingException.class)
+                .hasMessageStartingWith("File not found");
+        assertThat(fileSystem.getVersion()).isEqualTo(1);
+    }
+}
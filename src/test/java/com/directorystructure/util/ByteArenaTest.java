@@ -0,0 +1,68 @@
+package com.directorystructure.util;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("ByteArena Logic Tests")
+class ByteArenaTest {
+
+    @Test
+    @DisplayName("Should decode and order entries exactly like String.compareTo, including non-ASCII names")
+    void shouldCompareLikeStrings() {
+        List<String> values = List.of("", "a", "ab", "b", "B", "file10", "file9", "\u00e4", "a\u00e4", "a\ud83d\ude00", "a\ufffd",
+                "x".repeat(300));
+        ByteArena arena = new ByteArena();
+        long[] addresses = values.stream().mapToLong(arena::add).toArray();
+
+        for (int i = 0; i < values.size(); i++) {
+            assertThat(arena.getString(addresses[i])).isEqualTo(values.get(i));
+            StringBuilder appended = new StringBuilder(">");
+            arena.appendTo(addresses[i], appended);
+            assertThat(appended.toString()).isEqualTo(">" + values.get(i));
+            for (int j = 0; j < values.size(); j++) {
+                int expected = Integer.signum(values.get(i).compareTo(values.get(j)));
+                assertThat(Integer.signum(arena.compare(addresses[i], addresses[j]))).isEqualTo(expected);
+                assertThat(Integer.signum(arena.compare(addresses[i], values.get(j)))).isEqualTo(expected);
+            }
+        }
+        assertThat(arena.add((String) null)).isEqualTo(ByteArena.NO_ADDRESS);
+        assertThat(arena.getString(ByteArena.NO_ADDRESS)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should keep forked arenas from overwriting each other's entries")
+    void shouldIsolateForks() {
+        ByteArena arena = new ByteArena();
+        long shared = arena.add("shared");
+        ByteArena fork = arena.fork();
+
+        long original = arena.add("original");
+        long forked = fork.add("forked");
+
+        assertThat(arena.getString(original)).isEqualTo("original");
+        assertThat(fork.getString(forked)).isEqualTo("forked");
+        assertThat(fork.getString(shared)).isEqualTo("shared");
+    }
+
+    @Test
+    @DisplayName("Should intern each distinct dictionary value once")
+    void shouldInternDictionaryValues() {
+        StringDictionary dictionary = new StringDictionary();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(dictionary.intern("checksum" + (i % 100))).isEqualTo(i % 100);
+        }
+
+        assertThat(dictionary.size()).isEqualTo(100);
+        assertThat(dictionary.get(42)).isEqualTo("checksum42");
+        assertThat(dictionary.find("checksum7")).isEqualTo(7);
+        assertThat(dictionary.find("missing")).isEqualTo(StringDictionary.NO_CODE);
+        assertThat(dictionary.intern(null)).isEqualTo(StringDictionary.NO_CODE);
+
+        StringDictionary fork = dictionary.fork();
+        assertThat(fork.intern("new")).isEqualTo(100);
+        assertThat(dictionary.find("new")).isEqualTo(StringDictionary.NO_CODE);
+    }
+}
@@ -1,14 +1,23 @@
 package com.directorystructure.util;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import com.directorystructure.exceptions.DataParsingException;
+import com.directorystructure.model.DirectoryStructure;
 import com.directorystructure.model.Node;
+import com.directorystructure.model.NodeBuffer;
+import com.directorystructure.model.NodeType;
 
 @DisplayName("CsvParser Logic Tests")
 class CsvParserTest {
@@ -92,4 +101,91 @@ class CsvParserTest {
                 .hasMessageContaining("Invalid number format");
     }
 
+    @Test
+    @DisplayName("Should parse a memory-mapped file with CRLF line endings and mixed-case types")
+    void shouldParseMemoryMappedFile(@TempDir Path tempDir) throws IOException {
+        Path csv = tempDir.resolve("inventory.csv");
+        Files.writeString(csv, "id;parentId;name;type;size;classification;checksum;\r\n"
+                + "1;;root;Directory;;;;\r\n"
+                + " 2 ; 1 ; file1 ; FILE ; -5 ; Secret ; abc ;\r\n"
+                + "3;1;file2;file;9223372036854775807;Secret;;", StandardCharsets.UTF_8);
+
+        NodeBuffer buffer = CsvParser.parse(csv);
+
+        assertThat(buffer.size()).isEqualTo(3);
+        assertThat(buffer.getType(0)).isEqualTo(NodeType.DIRECTORY);
+        assertThat(buffer.getParentId(0)).isEqualTo(NodeBuffer.NO_VALUE);
+        assertThat(buffer.getName(1)).isEqualTo("file1");
+        assertThat(buffer.getSize(1)).isEqualTo(-5L);
+        assertThat(buffer.getChecksum(1)).isEqualTo("abc");
+        assertThat(buffer.getSize(2)).isEqualTo(Long.MAX_VALUE);
+        assertThat(buffer.getChecksum(2)).isNull();
+        assertThat(buffer.getClassification(1)).isSameAs(buffer.getClassification(2));
+    }
+
+    @Test
+    @DisplayName("Should parse the same rows from a file path as from the classpath resource")
+    void shouldParseFileLikeResource(@TempDir Path tempDir) throws IOException {
+        Path csv = tempDir.resolve("test-empty-fields.csv");
+        try (var in = getClass().getClassLoader().getResourceAsStream("test-csv/test-empty-fields.csv")) {
+            Files.write(csv, in.readAllBytes());
+        }
+
+        List<Node> fromResource = CsvParser.parse("test-csv/test-empty-fields.csv");
+        List<Node> fromFile = CsvParser.parse(csv).toNodes();
+
+        assertThat(fromFile).usingRecursiveFieldByFieldElementComparator().isEqualTo(fromResource);
+    }
+
+    @Test
+    @DisplayName("Should throw exception for non-existent file path")
+    void shouldThrowExceptionForNonExistentFile(@TempDir Path tempDir) {
+        Path missing = tempDir.resolve("missing.csv");
+        assertThatThrownBy(() -> CsvParser.parse(missing))
+                .isInstanceOf(DataParsingException.class)
+                .hasMessage("File not found: " + missing);
+    }
+
+    @Test
+    @DisplayName("Should throw exception for number overflow")
+    void shouldThrowExceptionForNumberOverflow(@TempDir Path tempDir) throws IOException {
+        Path csv = tempDir.resolve("overflow.csv");
+        Files.writeString(csv, "1;;root;directory;9223372036854775808;;;", StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> CsvParser.parse(csv))
+                .isInstanceOf(DataParsingException.class)
+                .hasMessage("Invalid number format: '9223372036854775808'");
+    }
+
+    @Test
+    @DisplayName("Should split a large file at line boundaries and keep rows in file order")
+    void shouldParseChunksInParallel(@TempDir Path tempDir) throws IOException {
+        Path csv = tempDir.resolve("large.csv");
+        StringBuilder content = new StringBuilder("1;;root;directory;;;;\n");
+        for (int id = 2; id <= 100_000; id++) {
+            content.append(id).append(";1;file").append(id).append(";file;").append(id).append(";Public;42;\n");
+        }
+        Files.writeString(csv, content, StandardCharsets.UTF_8);
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            List<NodeBuffer> chunks = CsvParser.parseParallel(csv, pool);
+
+            assertThat(chunks).hasSizeGreaterThan(1);
+            long expectedId = 1;
+            for (NodeBuffer chunk : chunks) {
+                for (int row = 0; row < chunk.size(); row++) {
+                    assertThat(chunk.getId(row)).isEqualTo(expectedId++);
+                }
+            }
+            assertThat(expectedId - 1).isEqualTo(100_000);
+
+            DirectoryStructure structure = new DirectoryStructure();
+            structure.bulkLoad(chunks, pool);
+            assertThat(structure.getClassificationBits("Public").cardinality()).isEqualTo(99_999);
+            assertThat(structure.getChildren(1L)).hasSize(99_999).startsWith(10L, 100L, 1000L);
+        } finally {
+            pool.shutdown();
+        }
+    }
 }
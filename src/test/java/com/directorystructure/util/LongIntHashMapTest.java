@@ -0,0 +1,41 @@
+package com.directorystructure.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("LongIntHashMap Logic Tests")
+class LongIntHashMapTest {
+
+    @Test
+    @DisplayName("Should put, overwrite and grow past the initial capacity")
+    void shouldPutOverwriteAndGrow() {
+        LongIntHashMap map = new LongIntHashMap(2);
+        for (int i = 0; i < 1000; i++) {
+            map.put(i * 31L, i);
+        }
+
+        assertThat(map.size()).isEqualTo(1000);
+        assertThat(map.get(31L * 500)).isEqualTo(500);
+        assertThat(map.put(31L * 500, 7)).isEqualTo(500);
+        assertThat(map.get(31L * 500)).isEqualTo(7);
+        assertThat(map.get(-1L)).isEqualTo(LongIntHashMap.NO_VALUE);
+    }
+
+    @Test
+    @DisplayName("Should keep colliding keys reachable after removal")
+    void shouldKeepProbeChainsIntactAfterRemoval() {
+        LongIntHashMap map = new LongIntHashMap();
+        for (int i = 0; i < 200; i++) {
+            map.put(i, i);
+        }
+        for (int i = 0; i < 200; i += 2) {
+            assertThat(map.remove(i)).isEqualTo(i);
+        }
+
+        assertThat(map.size()).isEqualTo(100);
+        for (int i = 0; i < 200; i++) {
+            assertThat(map.get(i)).isEqualTo(i % 2 == 0 ? LongIntHashMap.NO_VALUE : i);
+        }
+    }
+}